@@ -0,0 +1,74 @@
+package perfecthashing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.FrozenPerfectHashSet;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.PerfectLinearHashSet;
+
+/* Lookups in the same keys held by a linear set and by its frozen flat layout, with String or byte arena keys */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FrozenLayoutBenchmark
+{
+    @Param({"linear", "frozen", "arena"})
+    private String layout;
+
+    @Param({"100000", "1000000"})
+    private int keyCount;
+
+    @Param({"0.5", "1.0"})
+    private double hitRatio;
+
+    private IPerfectHashSet hashSet;
+    private String[] probes;
+    private int cursor;
+
+    @Setup
+    public void setup()
+    {
+        final Random random = new Random(42);
+        final List<String> all = Keys.distinct(2 * this.keyCount, 16, random);
+        final List<String> keys = new ArrayList<>(all.subList(0, this.keyCount));
+
+        final PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet(keys, new BuildOptions().setSeed(7));
+        switch (this.layout)
+        {
+            case "frozen":
+                this.hashSet = linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.STRINGS);
+                break;
+            case "arena":
+                this.hashSet = linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA);
+                break;
+            default:
+                this.hashSet = linearHashSet;
+        }
+        this.probes = Keys.probes(keys, all.subList(this.keyCount, all.size()), this.hitRatio, random);
+    }
+
+    @Benchmark
+    public boolean search()
+    {
+        return this.hashSet.search(this.probes[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+}
@@ -0,0 +1,77 @@
+package perfecthashing.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import perfecthashing.hashing.HashFamily;
+import perfecthashing.hashing.HashFunction;
+
+/* Cost of one hash evaluation, for every family, with and without reducing the key to its fingerprint */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HashFunctionBenchmark
+{
+    @Param({"MATRIX", "MULTIPLY_SHIFT", "TABULATION", "SEEDED"})
+    private HashFamily family;
+
+    @Param({"1024", "1048576"})
+    private int capacity;
+
+    @Param({"8", "32"})
+    private int keyLength;
+
+    private HashFunction hashFunction;
+    private String[] keys;
+    private long[] fingerprints;
+    private int cursor;
+
+    @Setup
+    public void setup()
+    {
+        final Random random = new Random(42);
+        final List<String> distinct = Keys.distinct(Keys.PROBES, this.keyLength, random);
+
+        this.hashFunction = this.family.create(this.family.tableSize(this.capacity), random);
+        this.keys = distinct.toArray(new String[0]);
+        this.fingerprints = new long[this.keys.length];
+        for (int i = 0 ; i < this.keys.length ; ++i)
+        {
+            this.fingerprints[i] = HashFunction.fingerprint(this.keys[i]);
+        }
+    }
+
+    @Benchmark
+    public int hashFingerprint()
+    {
+        return this.hashFunction.hash(this.fingerprints[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public int hashKey()
+    {
+        return this.hashFunction.hash(this.keys[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public long fingerprint()
+    {
+        return HashFunction.fingerprint(this.keys[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+}
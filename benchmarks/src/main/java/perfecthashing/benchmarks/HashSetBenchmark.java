@@ -0,0 +1,84 @@
+package perfecthashing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import perfecthashing.hashing.IPerfectHashSet;
+
+/* Single-key operations on a set holding keyCount keys; the subclasses pick the backend and the key counts.
+   insertThenDelete and deleteThenInsert leave the set as they found it, so every iteration measures the
+   same table instead of one that grows or drains as the benchmark runs. Builds are in HashSetBuildBenchmark */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public abstract class HashSetBenchmark
+{
+    @Param({"8", "32"})
+    private int keyLength;
+
+    @Param({"0.0", "0.5", "1.0"})
+    private double hitRatio;
+
+    private IPerfectHashSet hashSet;
+    private String[] probes;
+    private String[] present;
+    private String[] absent;
+    private int cursor;
+
+    /* Number of keys the set is built with */
+    protected abstract int keyCount();
+
+    protected abstract IPerfectHashSet newSet(List<String> keys);
+
+    @Setup
+    public void setup()
+    {
+        final Random random = new Random(42);
+        final List<String> all = Keys.distinct(2 * this.keyCount(), this.keyLength, random);
+
+        final List<String> keys = new ArrayList<>(all.subList(0, this.keyCount()));
+        final List<String> missing = all.subList(this.keyCount(), all.size());
+
+        this.hashSet = this.newSet(keys);
+        this.probes = Keys.probes(keys, missing, this.hitRatio, random);
+        this.present = Keys.probes(keys, missing, 1.0, random);
+        this.absent = missing.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public boolean search()
+    {
+        return this.hashSet.search(this.probes[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean insertThenDelete()
+    {
+        final String key = this.absent[this.cursor++ % this.absent.length];
+        return this.hashSet.insert(key) & this.hashSet.delete(key);
+    }
+
+    @Benchmark
+    public boolean deleteThenInsert()
+    {
+        final String key = this.present[this.cursor++ & (Keys.PROBES - 1)];
+        return this.hashSet.delete(key) & this.hashSet.insert(key);
+    }
+}
@@ -0,0 +1,52 @@
+package perfecthashing.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import perfecthashing.hashing.IPerfectHashSet;
+
+/* Time to build a set from keyCount keys. Kept apart from HashSetBenchmark, whose hit ratio only shapes
+   the lookups: in the same state it would repeat every build once per hit ratio */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public abstract class HashSetBuildBenchmark
+{
+    @Param({"8", "32"})
+    private int keyLength;
+
+    private List<String> keys;
+
+    /* Number of keys the set is built with */
+    protected abstract int keyCount();
+
+    protected abstract IPerfectHashSet newSet(List<String> keys);
+
+    @Setup
+    public void setup()
+    {
+        this.keys = Keys.distinct(this.keyCount(), this.keyLength, new Random(42));
+    }
+
+    @Benchmark
+    public IPerfectHashSet build()
+    {
+        return this.newSet(this.keys);
+    }
+}
@@ -0,0 +1,52 @@
+package perfecthashing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/* Reproducible key material shared by the benchmarks */
+final class Keys
+{
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    /* Number of probes a benchmark cycles through; a power of two so the cursor wraps with a mask */
+    static final int PROBES = 1 << 12;
+
+    private Keys()
+    {
+    }
+
+    /* count distinct random alphanumeric keys of the given length */
+    static List<String> distinct(int count, int length, Random random)
+    {
+        final Set<String> keys = new LinkedHashSet<>();
+        final char[] chars = new char[length];
+
+        while (keys.size() < count)
+        {
+            for (int i = 0 ; i < length ; ++i)
+            {
+                chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+            keys.add(new String(chars));
+        }
+
+        return new ArrayList<>(keys);
+    }
+
+    /* PROBES lookups drawn from present keys with probability hitRatio, and from absent keys otherwise */
+    static String[] probes(List<String> present, List<String> absent, double hitRatio, Random random)
+    {
+        final String[] probes = new String[PROBES];
+
+        for (int i = 0 ; i < PROBES ; ++i)
+        {
+            final List<String> source = (random.nextDouble() < hitRatio) ? present : absent;
+            probes[i] = source.get(random.nextInt(source.size()));
+        }
+
+        return probes;
+    }
+}
@@ -0,0 +1,27 @@
+package perfecthashing.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.PerfectLinearHashSet;
+
+public class LinearHashSetBuildBenchmark extends HashSetBuildBenchmark
+{
+    @Param({"1000", "100000", "1000000"})
+    private int keyCount;
+
+    @Override
+    protected int keyCount()
+    {
+        return this.keyCount;
+    }
+
+    @Override
+    protected IPerfectHashSet newSet(List<String> keys)
+    {
+        return new PerfectLinearHashSet(keys, new BuildOptions().setSeed(7));
+    }
+}
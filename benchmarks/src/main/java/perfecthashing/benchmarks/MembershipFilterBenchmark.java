@@ -0,0 +1,68 @@
+package perfecthashing.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import perfecthashing.dictionary.PerfectHashDictionary;
+import perfecthashing.hashing.BuildOptions;
+
+/* Dictionary lookups with and without a membership filter in front, on a live and on a frozen dictionary */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MembershipFilterBenchmark
+{
+    @Param({"false", "true"})
+    private boolean filtered;
+
+    @Param({"false", "true"})
+    private boolean frozen;
+
+    @Param({"1000000"})
+    private int keyCount;
+
+    @Param({"0.1", "0.5"})
+    private double hitRatio;
+
+    private PerfectHashDictionary dictionary;
+    private String[] probes;
+    private int cursor;
+
+    @Setup
+    public void setup()
+    {
+        final Random random = new Random(42);
+        final List<String> all = Keys.distinct(2 * this.keyCount, 16, random);
+        final List<String> keys = new ArrayList<>(all.subList(0, this.keyCount));
+
+        this.dictionary = new PerfectHashDictionary("linear", keys, new BuildOptions().setSeed(7).setMembershipFilter(this.filtered));
+        if (this.frozen)
+        {
+            this.dictionary.freeze();
+        }
+        this.probes = Keys.probes(keys, all.subList(this.keyCount, all.size()), this.hitRatio, random);
+    }
+
+    @Benchmark
+    public boolean search()
+    {
+        return this.dictionary.search(this.probes[this.cursor++ & (Keys.PROBES - 1)]);
+    }
+}
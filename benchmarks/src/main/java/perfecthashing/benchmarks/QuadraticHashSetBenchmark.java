@@ -0,0 +1,28 @@
+package perfecthashing.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.PerfectQuadraticHashSet;
+
+/* The quadratic table holds keyCount^2 slots, which caps the key counts far below the linear ones */
+public class QuadraticHashSetBenchmark extends HashSetBenchmark
+{
+    @Param({"100", "1000", "3000"})
+    private int keyCount;
+
+    @Override
+    protected int keyCount()
+    {
+        return this.keyCount;
+    }
+
+    @Override
+    protected IPerfectHashSet newSet(List<String> keys)
+    {
+        return new PerfectQuadraticHashSet(keys, new BuildOptions().setSeed(7));
+    }
+}
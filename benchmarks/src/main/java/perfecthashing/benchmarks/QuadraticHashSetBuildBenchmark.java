@@ -0,0 +1,28 @@
+package perfecthashing.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.PerfectQuadraticHashSet;
+
+/* Same key counts as QuadraticHashSetBenchmark, capped by the keyCount^2 slots of the table */
+public class QuadraticHashSetBuildBenchmark extends HashSetBuildBenchmark
+{
+    @Param({"100", "1000", "3000"})
+    private int keyCount;
+
+    @Override
+    protected int keyCount()
+    {
+        return this.keyCount;
+    }
+
+    @Override
+    protected IPerfectHashSet newSet(List<String> keys)
+    {
+        return new PerfectQuadraticHashSet(keys, new BuildOptions().setSeed(7));
+    }
+}
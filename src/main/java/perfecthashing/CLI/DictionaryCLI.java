@@ -6,24 +6,41 @@ import java.util.List;
 import java.util.Scanner;
 
 import perfecthashing.dictionary.PerfectHashDictionary;
+import perfecthashing.hashing.HashFamily;
 import perfecthashing.utils.PerfectHashingStatistics;
+import perfecthashing.utils.ResultFormat;
 
 public class DictionaryCLI {
+    private static final int PROGRESS_INTERVAL = 100000;
+
     public void runCLI(){
         Scanner scanner = new Scanner(System.in);
         PerfectHashDictionary dictionary = null;
         String lastMessage = "";
 
         System.out.println("=== Perfect Hash Dictionary ===");
-        System.out.print("Choose backend type (quadratic / linear): ");
+        System.out.print("Choose backend type (quadratic / linear / static): ");
         String type = scanner.nextLine().trim().toLowerCase();
 
+        HashFamily hashFamily = null;
+        while (hashFamily == null) {
+            System.out.print("Choose hash family (matrix / multiply-shift / tabulation / seeded): ");
+            try {
+                hashFamily = HashFamily.forName(scanner.nextLine());
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
         System.out.println("Enter initial keys separated by space (or press Enter for empty): ");
         String line = scanner.nextLine();
         List<String> initialKeys = line.isEmpty() ? new ArrayList<>() : Arrays.asList(line.split("\\s+"));
 
-        dictionary = new PerfectHashDictionary(type, initialKeys);
-        lastMessage = "Dictionary initialized with backend: " + type;
+        dictionary = new PerfectHashDictionary(type, initialKeys, hashFamily);
+        dictionary.setProgressListener((keys, bytesRead, totalBytes) ->
+                System.out.printf("Processed %d keys (%d%% of the file)...%n", keys,
+                                  (totalBytes == 0) ? 100 : bytesRead * 100 / totalBytes), PROGRESS_INTERVAL);
+        lastMessage = "Dictionary initialized with backend: " + type + ", hash family: " + hashFamily;
 
         while (true) {
             // Clear screen
@@ -55,90 +72,99 @@ public class DictionaryCLI {
             // Get the first character as command
             char firstChar = input.charAt(0);
 
-            switch (firstChar) {
-                case '1': // insert
-                    System.out.print("Enter word to insert: ");
-                    String wordToInsert = scanner.nextLine().trim();
-                    if (wordToInsert.isEmpty()) {
-                        lastMessage = "Please provide a word to insert.";
-                        break;
-                    }
-                    boolean inserted = dictionary.insert(wordToInsert);
-                    lastMessage = inserted ? "Word '" + wordToInsert + "' inserted." :
-                                           "Word '" + wordToInsert + "' already exists.";
-                    break;
-
-                case '2': // delete
-                    System.out.print("Enter word to delete: ");
-                    String wordToDelete = scanner.nextLine().trim();
-                    if (wordToDelete.isEmpty()) {
-                        lastMessage = "Please provide a word to delete.";
-                        break;
-                    }
-                    boolean deleted = dictionary.delete(wordToDelete);
-                    lastMessage = deleted ? "Word '" + wordToDelete + "' deleted." :
-                                          "Word '" + wordToDelete + "' not found.";
-                    break;
-
-                case '3': // search
-                    System.out.print("Enter word to search: ");
-                    String wordToSearch = scanner.nextLine().trim();
-                    if (wordToSearch.isEmpty()) {
-                        lastMessage = "Please provide a word to search.";
+            try {
+                switch (firstChar) {
+                    case '1': // insert
+                        System.out.print("Enter word to insert: ");
+                        String wordToInsert = scanner.nextLine().trim();
+                        if (wordToInsert.isEmpty()) {
+                            lastMessage = "Please provide a word to insert.";
+                            break;
+                        }
+                        boolean inserted = dictionary.insert(wordToInsert);
+                        lastMessage = inserted ? "Word '" + wordToInsert + "' inserted." :
+                                               "Word '" + wordToInsert + "' already exists.";
                         break;
-                    }
-                    boolean found = dictionary.search(wordToSearch);
-                    lastMessage = found ? "Word '" + wordToSearch + "' exists." :
-                                        "Word '" + wordToSearch + "' not found.";
-                    break;
-
-                case '4': // batch_insert
-                    System.out.print("Enter file path for batch insert: ");
-                    String insertFilePath = scanner.nextLine().trim();
-                    if (insertFilePath.isEmpty()) {
-                        lastMessage = "Please provide a file path.";
+
+                    case '2': // delete
+                        System.out.print("Enter word to delete: ");
+                        String wordToDelete = scanner.nextLine().trim();
+                        if (wordToDelete.isEmpty()) {
+                            lastMessage = "Please provide a word to delete.";
+                            break;
+                        }
+                        boolean deleted = dictionary.delete(wordToDelete);
+                        lastMessage = deleted ? "Word '" + wordToDelete + "' deleted." :
+                                              "Word '" + wordToDelete + "' not found.";
                         break;
-                    }
-
-                    int[] insertResults = dictionary.batchInsert(insertFilePath);
-                    if (insertResults == null) {
-                        lastMessage = "Failed to perform batch insert operation.";
-                    } else {
-                        lastMessage = String.format("Batch insert completed: %d newly added, %d already existing",
-                                                  insertResults[0], insertResults[1]);
-                    }
-                    break;
-
-                case '5': // batch_delete
-                    System.out.print("Enter file path for batch delete: ");
-                    String deleteFilePath = scanner.nextLine().trim();
-                    if (deleteFilePath.isEmpty()) {
-                        lastMessage = "Please provide a file path.";
+
+                    case '3': // search
+                        System.out.print("Enter word to search: ");
+                        String wordToSearch = scanner.nextLine().trim();
+                        if (wordToSearch.isEmpty()) {
+                            lastMessage = "Please provide a word to search.";
+                            break;
+                        }
+                        boolean found = dictionary.search(wordToSearch);
+                        lastMessage = found ? "Word '" + wordToSearch + "' exists." :
+                                            "Word '" + wordToSearch + "' not found.";
                         break;
-                    }
 
-                    int[] deleteResults = dictionary.batchDelete(deleteFilePath);
-                    if (deleteResults == null) {
-                        lastMessage = "Failed to perform batch delete operation.";
-                    } else {
-                        lastMessage = String.format("Batch delete completed: %d deleted, %d non-existing",
-                                                  deleteResults[0], deleteResults[1]);
-                    }
-                    break;
+                    case '4': // batch_insert
+                        System.out.print("Enter file path for batch insert: ");
+                        String insertFilePath = scanner.nextLine().trim();
+                        if (insertFilePath.isEmpty()) {
+                            lastMessage = "Please provide a file path.";
+                            break;
+                        }
+
+                        int[] insertResults = dictionary.parallelBatchInsert(insertFilePath, Runtime.getRuntime().availableProcessors());
+                        if (insertResults == null) {
+                            lastMessage = "Failed to perform batch insert operation.";
+                        } else {
+                            lastMessage = String.format("Batch insert completed: %d newly added, %d already existing",
+                                                      insertResults[0], insertResults[1]);
+                        }
+                        break;
 
-                case '6': // exit
-                    System.out.println("Exiting.");
-                    scanner.close();
-                    return;
+                    case '5': // batch_delete
+                        System.out.print("Enter file path for batch delete: ");
+                        String deleteFilePath = scanner.nextLine().trim();
+                        if (deleteFilePath.isEmpty()) {
+                            lastMessage = "Please provide a file path.";
+                            break;
+                        }
+
+                        int[] deleteResults = dictionary.batchDelete(deleteFilePath);
+                        if (deleteResults == null) {
+                            lastMessage = "Failed to perform batch delete operation.";
+                        } else {
+                            lastMessage = String.format("Batch delete completed: %d deleted, %d non-existing",
+                                                      deleteResults[0], deleteResults[1]);
+                        }
+                        break;
 
-                case '7':
-                    PerfectHashingStatistics.runStatisticsOnHashingOperations() ;
-                    break;
+                    case '6': // exit
+                        System.out.println("Exiting.");
+                        scanner.close();
+                        return;
+
+                    case '7':
+                        System.out.print("Choose output format (xlsx / streaming-xlsx / csv / json-lines): ");
+                        try {
+                            PerfectHashingStatistics.runStatisticsOnHashingOperations(ResultFormat.forName(scanner.nextLine()));
+                        } catch (IllegalArgumentException e) {
+                            lastMessage = e.getMessage();
+                        }
+                        break;
 
 
 
-                default:
-                    lastMessage = "Unknown command. Please enter a number between 1 and 6.";
+                    default:
+                        lastMessage = "Unknown command. Please enter a number between 1 and 6.";
+                }
+            } catch (UnsupportedOperationException e) {
+                lastMessage = "Operation not supported by the " + type + " backend: " + e.getMessage();
             }
         }
     }
@@ -0,0 +1,9 @@
+package perfecthashing.dictionary;
+
+/* Receives the progress of PerfectHashDictionary.batchInsert and batchDelete */
+@FunctionalInterface
+public interface BatchProgressListener {
+
+    /* Called every configured number of keys and once more when the file is done */
+    void onProgress(long keysProcessed, long bytesRead, long totalBytes);
+}
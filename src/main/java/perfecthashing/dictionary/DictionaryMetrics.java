@@ -0,0 +1,175 @@
+package perfecthashing.dictionary;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import perfecthashing.hashing.RehashListener;
+
+/* Operation and rebuild counters of a live PerfectHashDictionary.
+   Counters are LongAdders, so that threads sharing a thread-safe dictionary do not contend on them,
+   and the size and capacity are read from the backend only when asked for */
+public class DictionaryMetrics implements DictionaryMetricsMBean, RehashListener {
+    private static final double NANO_TO_MILLI = 1e6;
+
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LongAdder searchHits = new LongAdder();
+    private final LongAdder searchMisses = new LongAdder();
+    private final LongAdder filterRejections = new LongAdder();
+    private final LongAdder filterFalsePositives = new LongAdder();
+    private final LongAdder rehashes = new LongAdder();
+    private final LongAdder rehashTrials = new LongAdder();
+    private final LongAdder rehashNanos = new LongAdder();
+    private final LongAdder resizes = new LongAdder();
+    private final LongAdder resizeNanos = new LongAdder();
+    private final IntSupplier size;
+    private final LongSupplier secondLevelCapacity;
+
+    DictionaryMetrics(IntSupplier size, LongSupplier secondLevelCapacity) {
+        this.size = size;
+        this.secondLevelCapacity = secondLevelCapacity;
+    }
+
+    void recordInserts(long count) {
+        inserts.add(count);
+    }
+
+    void recordDeletes(long count) {
+        deletes.add(count);
+    }
+
+    void recordSearch(boolean hit) {
+        (hit ? searchHits : searchMisses).increment();
+    }
+
+    void recordSearches(long hits, long misses) {
+        searchHits.add(hits);
+        searchMisses.add(misses);
+    }
+
+    void recordFilterOutcomes(long rejections, long falsePositives) {
+        filterRejections.add(rejections);
+        filterFalsePositives.add(falsePositives);
+    }
+
+    @Override
+    public void onRehash(long trials, long nanos) {
+        rehashes.increment();
+        rehashTrials.add(trials);
+        rehashNanos.add(nanos);
+    }
+
+    @Override
+    public void onResize(int oldCapacity, int newCapacity, long nanos) {
+        resizes.increment();
+        resizeNanos.add(nanos);
+    }
+
+    @Override
+    public long getInsertCount() {
+        return inserts.sum();
+    }
+
+    @Override
+    public long getDeleteCount() {
+        return deletes.sum();
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searchHits.sum() + searchMisses.sum();
+    }
+
+    @Override
+    public long getSearchHits() {
+        return searchHits.sum();
+    }
+
+    @Override
+    public long getSearchMisses() {
+        return searchMisses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hits = searchHits.sum();
+        final long searches = hits + searchMisses.sum();
+        return (searches == 0) ? Double.NaN : (double) hits / searches;
+    }
+
+    @Override
+    public double getMissRatio() {
+        final long misses = searchMisses.sum();
+        final long searches = misses + searchHits.sum();
+        return (searches == 0) ? Double.NaN : (double) misses / searches;
+    }
+
+    @Override
+    public long getFilterRejections() {
+        return filterRejections.sum();
+    }
+
+    @Override
+    public long getFilterFalsePositives() {
+        return filterFalsePositives.sum();
+    }
+
+    @Override
+    public double getFilterFalsePositiveRate() {
+        final long falsePositives = filterFalsePositives.sum();
+        final long misses = falsePositives + filterRejections.sum();
+        return (misses == 0) ? Double.NaN : (double) falsePositives / misses;
+    }
+
+    @Override
+    public long getRehashCount() {
+        return rehashes.sum();
+    }
+
+    @Override
+    public long getRehashTrials() {
+        return rehashTrials.sum();
+    }
+
+    @Override
+    public double getRehashMillis() {
+        return rehashNanos.sum() / NANO_TO_MILLI;
+    }
+
+    @Override
+    public long getResizeCount() {
+        return resizes.sum();
+    }
+
+    @Override
+    public double getResizeMillis() {
+        return resizeNanos.sum() / NANO_TO_MILLI;
+    }
+
+    @Override
+    public int getSize() {
+        return size.getAsInt();
+    }
+
+    @Override
+    public long getSecondLevelCapacity() {
+        return secondLevelCapacity.getAsLong();
+    }
+
+    @Override
+    public double getSlotsPerKey() {
+        final long capacity = secondLevelCapacity.getAsLong();
+        final int keys = size.getAsInt();
+        return (capacity < 0 || keys == 0) ? Double.NaN : (double) capacity / keys;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : new LongAdder[]{inserts, deletes, searchHits, searchMisses, filterRejections,
+                                                 filterFalsePositives, rehashes, rehashTrials, rehashNanos,
+                                                 resizes, resizeNanos}) {
+            counter.reset();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package perfecthashing.dictionary;
+
+/* JMX view of DictionaryMetrics, registered by PerfectHashDictionary.registerMBean */
+public interface DictionaryMetricsMBean {
+
+    /* Operation counts, whether or not the operation changed the dictionary */
+    long getInsertCount();
+
+    long getDeleteCount();
+
+    long getSearchCount();
+
+    long getSearchHits();
+
+    long getSearchMisses();
+
+    /* Share of searches that found their key, NaN before the first search */
+    double getHitRatio();
+
+    /* Share of searches that did not find their key, NaN before the first search */
+    double getMissRatio();
+
+    /* Misses answered by the membership filter without a lookup, and misses it let through to one */
+    long getFilterRejections();
+
+    long getFilterFalsePositives();
+
+    /* Share of misses the membership filter let through, NaN without a filter or a miss */
+    double getFilterFalsePositiveRate();
+
+    /* Second-level rebuilds after a collision or a bucket growing, with the hash functions they drew */
+    long getRehashCount();
+
+    long getRehashTrials();
+
+    double getRehashMillis();
+
+    /* Top-level table growths, each of which rebuilds every bucket */
+    long getResizeCount();
+
+    double getResizeMillis();
+
+    int getSize();
+
+    /* Slots of all second-level tables, -1 for backends without any */
+    long getSecondLevelCapacity();
+
+    /* Second-level slots per key, NaN when the dictionary is empty or has no second level */
+    double getSlotsPerKey();
+
+    /* Sets every counter back to zero; the size and capacity gauges are not counters */
+    void reset();
+}
@@ -1,71 +1,415 @@
 package perfecthashing.dictionary;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.ConcurrentPerfectLinearHashSet;
+import perfecthashing.hashing.CountingBloomFilter;
+import perfecthashing.hashing.FrozenPerfectHashSet;
+import perfecthashing.hashing.HashFamily;
+import perfecthashing.hashing.HashFunction;
 import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.MappedPerfectHashSet;
+import perfecthashing.hashing.MembershipFilter;
+import perfecthashing.hashing.MemoryFootprint;
+import perfecthashing.hashing.OptimisticPerfectHashSet;
 import perfecthashing.hashing.PerfectLinearHashSet;
 import perfecthashing.hashing.PerfectQuadraticHashSet;
+import perfecthashing.hashing.StaticPerfectHashSet;
+import perfecthashing.hashing.XorFilter;
+import perfecthashing.utils.KeyFileReader;
 
 
 public class PerfectHashDictionary {
+    /* Chunks per thread in parallelBatchInsert, so that a thread left with short lines can pick up more */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /* Smallest capacity a counting Bloom filter is built with, so that a dictionary starting empty does not rebuild it at once */
+    private static final int MIN_FILTER_CAPACITY = 1024;
+
     private IPerfectHashSet backend;
+    private MembershipFilter filter;
     private String type;
+    private BuildOptions options;
+    private BatchProgressListener progressListener;
+    private int progressInterval = 1;
+    private final DictionaryMetrics metrics = new DictionaryMetrics(() -> backend.getSize(), this::secondLevelCapacity);
+    private ObjectName mbeanName;
 
     public PerfectHashDictionary(String type, List<String> keys) {
+        this(type, keys, new BuildOptions());
+    }
+
+    public PerfectHashDictionary(String type, List<String> keys, HashFamily hashFamily) {
+        this(type, keys, new BuildOptions().setHashFamily(hashFamily));
+    }
+
+    /* Builds the dictionary with the given hash family, seed and build parallelism */
+    public PerfectHashDictionary(String type, List<String> keys, BuildOptions options) {
         this.type = type;
+        this.options = options;
         build(keys);
     }
 
+    private PerfectHashDictionary(String type, IPerfectHashSet backend) {
+        this.type = type;
+        this.options = new BuildOptions();
+        this.backend = backend;
+    }
+
     private void build(List<String> keys) {
+        final HashFamily hashFamily = options.getHashFamily();
 
-        if (type.equals("quadratic"))
+        if (type.equals("static"))
+        {
+            // Read-only minimal perfect hash; insert and delete throw UnsupportedOperationException
+            backend = new StaticPerfectHashSet(keys, StaticPerfectHashSet.Verification.KEYS, options);
+        }
+        else if (type.equals("quadratic"))
         {
-            backend = (!keys.isEmpty()) ? new PerfectQuadraticHashSet(keys) : new PerfectQuadraticHashSet();
+            backend = (!keys.isEmpty()) ? new PerfectQuadraticHashSet(keys, options) : new PerfectQuadraticHashSet(hashFamily);
         }
         else
         {
-            backend = (!keys.isEmpty()) ? new PerfectLinearHashSet(keys) : new PerfectLinearHashSet();
+            backend = (!keys.isEmpty()) ? new PerfectLinearHashSet(keys, options) : new PerfectLinearHashSet(options);
+        }
+
+        if (backend instanceof PerfectLinearHashSet) {
+            ((PerfectLinearHashSet) backend).setRehashListener(metrics);
+        } else if (backend instanceof PerfectQuadraticHashSet) {
+            ((PerfectQuadraticHashSet) backend).setRehashListener(metrics);
+        }
+
+        // Sizes the set once for the expected keys rather than through successive resizes
+        backend.reserve(options.getExpectedKeys());
+
+        if (options.hasMembershipFilter()) {
+            filter = (backend instanceof StaticPerfectHashSet)
+                    ? new XorFilter(keys.stream().mapToLong(HashFunction::fingerprint).toArray())
+                    : newBloomFilter(Math.max(keys.size(), options.getExpectedKeys()));
+        }
+
+        if (options.isThreadSafe())
+        {
+            // Linear buckets take writers in parallel; the other backends serialize them
+            backend = (backend instanceof PerfectLinearHashSet)
+                    ? new ConcurrentPerfectLinearHashSet((PerfectLinearHashSet) backend)
+                    : new OptimisticPerfectHashSet(backend);
+        }
+
+    }
+
+    public HashFamily getHashFamily() {
+        return options.getHashFamily();
+    }
+
+    /* The backend without the thread-safety wrapper */
+    private IPerfectHashSet unwrappedBackend() {
+        if (backend instanceof ConcurrentPerfectLinearHashSet) {
+            return ((ConcurrentPerfectLinearHashSet) backend).getHashSet();
+        }
+        return (backend instanceof OptimisticPerfectHashSet) ? ((OptimisticPerfectHashSet) backend).getHashSet() : backend;
+    }
+
+    /* A counting Bloom filter of the current keys, sized for at least capacity keys */
+    private CountingBloomFilter newBloomFilter(int capacity) {
+        final CountingBloomFilter bloomFilter = new CountingBloomFilter(Math.max(capacity, MIN_FILTER_CAPACITY));
+        unwrappedBackend().forEachKey(key -> bloomFilter.add(HashFunction.fingerprint(key)));
+        return bloomFilter;
+    }
+
+    /* Rebuilds the Bloom filter at twice its keys once they outgrow it. A thread-safe dictionary keeps the filter
+       it was built with, so its false positive rate rises past BuildOptions.setExpectedKeys */
+    private void growFilter() {
+        final CountingBloomFilter bloomFilter = (CountingBloomFilter) filter;
+        if (!options.isThreadSafe() && bloomFilter.getKeyCount() > bloomFilter.getCapacity()) {
+            filter = newBloomFilter((int) Math.min(Integer.MAX_VALUE - 8, 2L * bloomFilter.getKeyCount()));
         }
+    }
+
+    public MembershipFilter getMembershipFilter() {
+        return filter;
+    }
+
+    /* Second-level slots for the metrics, read under the lock of a thread-safe linear dictionary */
+    private long secondLevelCapacity() {
+        if (backend instanceof ConcurrentPerfectLinearHashSet) {
+            return ((ConcurrentPerfectLinearHashSet) backend).getInnerBucketsTotalCapacity();
+        }
+
+        final IPerfectHashSet hashSet = unwrappedBackend();
+        if (hashSet instanceof PerfectLinearHashSet) {
+            return ((PerfectLinearHashSet) hashSet).getInnerBucketsTotalCapacity();
+        } else if (hashSet instanceof PerfectQuadraticHashSet) {
+            return ((PerfectQuadraticHashSet) hashSet).getCapacity();
+        } else if (hashSet instanceof FrozenPerfectHashSet) {
+            return ((FrozenPerfectHashSet) hashSet).getSlotCount();
+        }
+        return -1;
+    }
 
+    /* Estimated bytes held by the backend, with a membership filter counted as slots;
+       a loaded dictionary reports its mapped file, which is off-heap */
+    public MemoryFootprint memoryFootprint() {
+        final MemoryFootprint footprint = backend.memoryFootprint();
+        return (filter == null) ? footprint : footprint.plus(new MemoryFootprint(0, filter.memoryFootprint(), 0, 0));
+    }
+
+    public DictionaryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /* Registers the metrics with the platform MBean server as perfecthashing:type=PerfectHashDictionary,name=<name>.
+       The size and capacity of a dictionary that is not thread-safe are read without synchronization */
+    public boolean registerMBean(final String name) {
+        try {
+            mbeanName = ObjectName.getInstance("perfecthashing:type=PerfectHashDictionary,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, mbeanName);
+            return true;
+        } catch (JMException e) {
+            System.err.println("Error registering the metrics: " + e.getMessage());
+            mbeanName = null;
+            return false;
+        }
+    }
+
+    public void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            System.err.println("Error unregistering the metrics: " + e.getMessage());
+        }
+        mbeanName = null;
+    }
+
+    /* Writes a linear or quadratic dictionary to a binary file that load() maps back in without rebuilding,
+       and returns false for any other backend. A thread-safe linear dictionary is saved with its writers
+       locked out; any other thread-safe one must not be written to while it is being saved */
+    public boolean save(final String filePath) {
+        try {
+            final IPerfectHashSet hashSet = (backend instanceof ConcurrentPerfectLinearHashSet) ? backend : unwrappedBackend();
+            if (hashSet instanceof ConcurrentPerfectLinearHashSet) {
+                ((ConcurrentPerfectLinearHashSet) hashSet).save(Paths.get(filePath));
+            } else if (hashSet instanceof PerfectLinearHashSet) {
+                MappedPerfectHashSet.save((PerfectLinearHashSet) hashSet, Paths.get(filePath));
+            } else if (hashSet instanceof PerfectQuadraticHashSet) {
+                MappedPerfectHashSet.save((PerfectQuadraticHashSet) hashSet, Paths.get(filePath));
+            } else {
+                System.err.println("Only linear and quadratic dictionaries can be saved, not a " + hashSet.getClass().getSimpleName());
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /* Maps a dictionary saved by save(); the result is read-only */
+    public static PerfectHashDictionary load(final String filePath) {
+        try {
+            return new PerfectHashDictionary("mapped", MappedPerfectHashSet.load(Paths.get(filePath)));
+        } catch (IOException e) {
+            System.err.println("Error reading from file: " + e.getMessage());
+            return null;
+        }
     }
 
 
 
     public boolean search(String key) {
-        return backend.search(key);
+        if (filter != null && !filter.mightContain(HashFunction.fingerprint(key))) {
+            metrics.recordFilterOutcomes(1, 0);
+            metrics.recordSearch(false);
+            return false;
+        }
+
+        final boolean found = backend.search(key);
+        if (filter != null && !found) {
+            metrics.recordFilterOutcomes(0, 1);
+        }
+        metrics.recordSearch(found);
+        return found;
     }
 
+    /* The key leaves the Bloom filter after the backend, so that a concurrent search never sees it in
+       the backend but not in the filter */
     public boolean delete(String key) {
-        return backend.delete(key);
+        metrics.recordDeletes(1);
+        final boolean deleted = backend.delete(key);
+        if (deleted && filter instanceof CountingBloomFilter) {
+            ((CountingBloomFilter) filter).remove(HashFunction.fingerprint(key));
+        }
+        return deleted;
     }
 
+    /* And enters it before, taken back out if the key was already there */
     public boolean insert(String key) {
-        return backend.insert(key);
+        metrics.recordInserts(1);
+        if (!(filter instanceof CountingBloomFilter)) {
+            return backend.insert(key);
+        }
+
+        final long fingerprint = HashFunction.fingerprint(key);
+        ((CountingBloomFilter) filter).add(fingerprint);
+        final boolean inserted = backend.insert(key);
+        if (inserted) {
+            growFilter();
+        } else {
+            ((CountingBloomFilter) filter).remove(fingerprint);
+        }
+        return inserted;
+    }
+
+    /* Turns a linear dictionary into a read-only FrozenPerfectHashSet of its current keys, whose lookups
+       touch a few flat arrays instead of an object per bucket. A thread-safe dictionary must not be
+       written to while it is being frozen */
+    public void freeze() {
+        freeze(FrozenPerfectHashSet.KeyStorage.STRINGS);
+    }
+
+    /* Same, with the keys kept as Strings or packed into one UTF-8 byte arena */
+    public void freeze(FrozenPerfectHashSet.KeyStorage keyStorage) {
+        if (backend instanceof ConcurrentPerfectLinearHashSet) {
+            backend = ((ConcurrentPerfectLinearHashSet) backend).freeze(keyStorage);
+        } else if (backend instanceof PerfectLinearHashSet) {
+            backend = ((PerfectLinearHashSet) backend).freeze(keyStorage);
+        } else {
+            throw new UnsupportedOperationException("Only linear dictionaries can be frozen");
+        }
+        type = "frozen";
+
+        // The keys no longer change, so the Bloom filter gives way to a smaller xor filter
+        if (filter != null) {
+            final long[] fingerprints = new long[backend.getSize()];
+            final int[] count = {0};
+            backend.forEachKey(key -> fingerprints[count[0]++] = HashFunction.fingerprint(key));
+            filter = new XorFilter(fingerprints);
+        }
+    }
+
+    /* Makes room for expectedKeys keys in total, see IPerfectHashSet.reserve */
+    public void reserve(int expectedKeys) {
+        backend.reserve(expectedKeys);
+        if (filter instanceof CountingBloomFilter && !options.isThreadSafe()
+                && expectedKeys > ((CountingBloomFilter) filter).getCapacity()) {
+            filter = newBloomFilter(expectedKeys);
+        }
+    }
+
+    /* Bulk variants: bit i of the result is the outcome for keys.get(i).
+       searchAll only passes the backend the keys the membership filter lets through */
+    public BitSet searchAll(List<String> keys) {
+        if (filter == null) {
+            final BitSet found = backend.searchAll(keys);
+            metrics.recordSearches(found.cardinality(), keys.size() - found.cardinality());
+            return found;
+        }
+
+        final List<String> candidates = new ArrayList<>();
+        final int[] positions = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            if (filter.mightContain(HashFunction.fingerprint(keys.get(i)))) {
+                positions[candidates.size()] = i;
+                candidates.add(keys.get(i));
+            }
+        }
+
+        final BitSet candidatesFound = backend.searchAll(candidates);
+        final BitSet found = new BitSet(keys.size());
+        for (int c = candidatesFound.nextSetBit(0); c >= 0; c = candidatesFound.nextSetBit(c + 1)) {
+            found.set(positions[c]);
+        }
+
+        metrics.recordFilterOutcomes(keys.size() - candidates.size(), candidates.size() - found.cardinality());
+        metrics.recordSearches(found.cardinality(), keys.size() - found.cardinality());
+        return found;
+    }
+
+    public BitSet deleteAll(List<String> keys) {
+        metrics.recordDeletes(keys.size());
+        final BitSet deleted = backend.deleteAll(keys);
+        if (filter instanceof CountingBloomFilter) {
+            for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1)) {
+                ((CountingBloomFilter) filter).remove(HashFunction.fingerprint(keys.get(i)));
+            }
+        }
+        return deleted;
+    }
+
+    public BitSet insertAll(List<String> keys) {
+        metrics.recordInserts(keys.size());
+        if (!(filter instanceof CountingBloomFilter)) {
+            return backend.insertAll(keys);
+        }
+
+        final CountingBloomFilter bloomFilter = (CountingBloomFilter) filter;
+        final long[] fingerprints = new long[keys.size()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = HashFunction.fingerprint(keys.get(i));
+            bloomFilter.add(fingerprints[i]);
+        }
+
+        final BitSet inserted = backend.insertAll(keys);
+        for (int i = inserted.nextClearBit(0); i < fingerprints.length; i = inserted.nextClearBit(i + 1)) {
+            bloomFilter.remove(fingerprints[i]);
+        }
+        growFilter();
+        return inserted;
+    }
+
+    /* Reports batchInsert and batchDelete progress to the listener every interval keys; null turns reporting off */
+    public void setProgressListener(BatchProgressListener listener, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The progress interval must be positive");
+        }
+        this.progressListener = listener;
+        this.progressInterval = interval;
+    }
+
+    private void reportProgress(long keysProcessed, long bytesRead, long totalBytes, boolean done) {
+        if (progressListener != null && (done || keysProcessed % progressInterval == 0)) {
+            progressListener.onProgress(keysProcessed, bytesRead, totalBytes);
+        }
     }
 
+    /* Inserts every non-blank line of a UTF-8 file, trimmed; returns the counts of new and already present keys */
     public int[] batchInsert(final String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
+        try (KeyFileReader reader = new KeyFileReader(Paths.get(filePath))) {
+            // A linear set is grown once from the line count estimate instead of doubling its way up;
+            // a quadratic one is left alone, as its table grows with the square of the count
+            if (unwrappedBackend() instanceof PerfectLinearHashSet) {
+                reserve((int) Math.min(Integer.MAX_VALUE, backend.getSize() + KeyFileReader.estimateLineCount(Paths.get(filePath))));
+            }
+
+            String key;
             int newlyAdded = 0;
             int alreadyExisting = 0;
 
-            while ((line = reader.readLine()) != null) {
-                String key = line.trim();
-                if (!key.isEmpty()) {
-                    if (insert(key)) {
-                        newlyAdded++;
-                    } else {
-                        alreadyExisting++;
-                    }
-                }
-
-                if(newlyAdded % 1 == 0) {
-                    System.out.println("Inserted " + newlyAdded + " keys so far...");
+            while ((key = reader.readKey()) != null) {
+                if (insert(key)) {
+                    newlyAdded++;
+                } else {
+                    alreadyExisting++;
                 }
+                reportProgress(newlyAdded + alreadyExisting, reader.getPosition(), reader.getLength(), false);
             }
+            reportProgress(newlyAdded + alreadyExisting, reader.getPosition(), reader.getLength(), true);
 
             return new int[] { newlyAdded, alreadyExisting };
         } catch (IOException e) {
@@ -74,22 +418,78 @@ public class PerfectHashDictionary {
         }
     }
 
+    /* batchInsert on threads workers for a linear dictionary: line-aligned chunks of the file are parsed in
+       parallel, then PerfectLinearHashSet.insertChunks hashes them and inserts them bucket-partitioned.
+       Other backends and thread-safe dictionaries fall back to batchInsert. Progress is reported once, at the end */
+    public int[] parallelBatchInsert(final String filePath, final int threads) {
+        if (threads <= 1 || !(backend instanceof PerfectLinearHashSet)) {
+            return batchInsert(filePath);
+        }
+
+        final Path path = Paths.get(filePath);
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final long[] boundaries = KeyFileReader.splitLines(path, threads * CHUNKS_PER_THREAD);
+
+            final List<ForkJoinTask<String[]>> parsing = new ArrayList<>();
+            for (int c = 0; c + 1 < boundaries.length; c++) {
+                final long start = boundaries[c];
+                final long end = boundaries[c + 1];
+                parsing.add(pool.submit(() -> readChunk(path, start, end)));
+            }
+
+            final List<String[]> chunks = new ArrayList<>();
+            long keys = 0;
+            for (ForkJoinTask<String[]> task : parsing) {
+                chunks.add(task.join());
+                keys += chunks.get(chunks.size() - 1).length;
+            }
+
+            metrics.recordInserts(keys);
+            final int[] counts = ((PerfectLinearHashSet) backend).insertChunks(chunks, threads);
+            if (filter != null) {
+                // The chunks bypass insert(), so the filter is refilled from the keys now held
+                filter = newBloomFilter(Math.max(((CountingBloomFilter) filter).getCapacity(), backend.getSize()));
+            }
+            reportProgress(keys, boundaries[boundaries.length - 1], boundaries[boundaries.length - 1], true);
+            return counts;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading from file: " + e.getMessage());
+            return null;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String[] readChunk(final Path path, final long start, final long end) {
+        try (KeyFileReader reader = new KeyFileReader(path, start, end, KeyFileReader.DEFAULT_BUFFER_SIZE)) {
+            final List<String> keys = new ArrayList<>();
+            String key;
+            while ((key = reader.readKey()) != null) {
+                keys.add(key);
+            }
+            return keys.toArray(new String[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Deletes every non-blank line of a UTF-8 file, trimmed; returns the counts of deleted and absent keys */
     public int[] batchDelete(final String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
+        try (KeyFileReader reader = new KeyFileReader(Paths.get(filePath))) {
+            String key;
             int deleted = 0;
             int nonExisting = 0;
 
-            while ((line = reader.readLine()) != null) {
-                String key = line.trim();
-                if (!key.isEmpty()) {
-                    if (delete(key)) {
-                        deleted++;
-                    } else {
-                        nonExisting++;
-                    }
+            while ((key = reader.readKey()) != null) {
+                if (delete(key)) {
+                    deleted++;
+                } else {
+                    nonExisting++;
                 }
+                reportProgress(deleted + nonExisting, reader.getPosition(), reader.getLength(), false);
             }
+            reportProgress(deleted + nonExisting, reader.getPosition(), reader.getLength(), true);
 
             return new int[] { deleted, nonExisting };
         } catch (IOException e) {
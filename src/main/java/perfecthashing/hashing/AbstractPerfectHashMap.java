@@ -0,0 +1,442 @@
+package perfecthashing.hashing;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/* Two-level perfect hash table from String keys to values, laid out like PerfectLinearHashSet and sharing its
+   top-level pass: a top-level function picks one of capacity buckets, and each bucket of k keys places them
+   collision-free in k^2 slots with a second-level function of the BuildOptions hash family, drawn again on a
+   collision. As in PerfectQuadraticHashSet, a SEEDED bucket keeps only the seed of its function and steps it.
+   Next to its key slots every bucket keeps a 16-bit tag per slot, compared before the key, and a value
+   array of the same length, so that the value of a key sits at the slot index of the key. Subclasses pick
+   the type of that array: Object[], int[] or long[]. This class grows, moves and clears the value arrays with
+   single-element array copies, so primitive values are never boxed, and the subclasses only read and write
+   the slot it hands them */
+public abstract class AbstractPerfectHashMap {
+
+    private static final int DEFAULT_CAPACITY = 5;
+
+    /* The map object (four references, two ints) and its Random with the AtomicLong seed */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(4 * MemoryFootprint.REFERENCE + 2 * Integer.BYTES)
+            + MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE) + MemoryFootprint.objectBytes(Long.BYTES);
+
+    /* Largest second-level table a bucket agrees to grow to, as PerfectQuadraticHashSet.reserve */
+    private static final long MAX_BUCKET_CAPACITY = 1L << 30;
+
+    /* Seeds a bucket tries before checking whether two of its keys share a fingerprint, which no seed can separate */
+    private static final int SEED_STEPS_BEFORE_CHECK = 64;
+
+    /* A bucket: four references, an int and a long */
+    private static final long BUCKET_BYTES = MemoryFootprint.objectBytes(4 * MemoryFootprint.REFERENCE + Integer.BYTES + Long.BYTES);
+
+    private Bucket[] buckets;
+    private int capacity;
+    private int size;
+    private final HashFamily hashFamily;
+    private HashFunction hashFunction;
+    private final Random random;
+    /* One-element value array holding the zero value, copied over the value of a freed slot */
+    private final Object emptyValue;
+
+
+
+    /* Constructors */
+
+    AbstractPerfectHashMap(BuildOptions options)
+    {
+        this.hashFamily = options.getHashFamily();
+        this.random = options.newRandom();
+        this.capacity = this.hashFamily.tableSize(Math.max(DEFAULT_CAPACITY, options.getExpectedKeys()));
+        this.buckets = new Bucket[this.capacity];
+        this.hashFunction = this.hashFamily.create(this.capacity, this.random);
+        this.emptyValue = this.newValues(1);
+    }
+
+
+
+    /* Value array hooks of the subclasses */
+
+    /* A value array of the given length: Object[], int[] or long[] */
+    abstract Object newValues(int length);
+
+    /* Bytes per element of the value array */
+    abstract int valueBytes();
+
+
+
+    /* Getters */
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public int getTotalCapacity()
+    {
+        return this.capacity;
+    }
+
+    public HashFamily getHashFamily()
+    {
+        return this.hashFamily;
+    }
+
+    /* Key and value slots of all buckets */
+    public long getInnerBucketsTotalCapacity()
+    {
+        long totalCapacity = 0;
+        for(Bucket bucket : this.buckets)
+        {
+            if(bucket == null) continue;
+
+            totalCapacity += bucket.keys.length;
+        }
+        return totalCapacity;
+    }
+
+    /* Key Strings, then the top-level table and every bucket with its key, tag and value arrays and its function.
+       The objects an Object[] points to are not counted, only the references to them */
+    public MemoryFootprint memoryFootprint()
+    {
+        long keyBytes = 0;
+        long slotBytes = MemoryFootprint.arrayBytes(this.buckets.length, MemoryFootprint.REFERENCE);
+        long functionBytes = this.hashFunction.memoryFootprint();
+        long headerBytes = SHALLOW_BYTES;
+
+        for(Bucket bucket : this.buckets)
+        {
+            if(bucket == null) continue;
+
+            for(String key : bucket.keys)
+            {
+                if(key != null) keyBytes += MemoryFootprint.stringBytes(key);
+            }
+            slotBytes += MemoryFootprint.arrayBytes(bucket.keys.length, MemoryFootprint.REFERENCE)
+                    + MemoryFootprint.arrayBytes(bucket.tags.length, Short.BYTES)
+                    + MemoryFootprint.arrayBytes(bucket.keys.length, this.valueBytes());
+            if(bucket.hashFunction != null) functionBytes += bucket.hashFunction.memoryFootprint();
+            headerBytes += BUCKET_BYTES;
+        }
+
+        return new MemoryFootprint(keyBytes, slotBytes, functionBytes, headerBytes);
+    }
+
+    public void forEachKey(Consumer<String> action)
+    {
+        for(Bucket bucket : this.buckets)
+        {
+            if(bucket == null) continue;
+
+            for(String key : bucket.keys)
+            {
+                if(key != null) action.accept(key);
+            }
+        }
+    }
+
+
+
+    /* Grows the top-level table to expectedKeys buckets at once, so that puts up to that count trigger no resize */
+    public void reserve(int expectedKeys)
+    {
+        if(expectedKeys <= this.capacity) return;
+
+        this.rehash(this.hashFamily.tableSize(expectedKeys));
+    }
+
+    public boolean containsKey(String key)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        return slotOf(this.buckets[this.hashFunction.hash(fingerprint)], key, fingerprint) >= 0;
+    }
+
+    public boolean remove(String key)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.buckets[this.hashFunction.hash(fingerprint)];
+        if(bucket == null)
+        {
+            return false;
+        }
+
+        final int slot = bucket.slotOf(key, fingerprint);
+        if(slot < 0)
+        {
+            return false;
+        }
+
+        // The freed value is zeroed, so that an Object[] does not keep it reachable and a key placed there later starts from zero
+        bucket.keys[slot] = null;
+        bucket.tags[slot] = 0;
+        System.arraycopy(this.emptyValue, 0, bucket.values, slot, 1);
+        --bucket.size;
+        --this.size;
+        return true;
+    }
+
+
+
+    /* Lookup and insertion helpers of the subclasses */
+
+    /* The bucket a key goes to, or null when it holds no key */
+    final Bucket bucketOf(long fingerprint)
+    {
+        return this.buckets[this.hashFunction.hash(fingerprint)];
+    }
+
+    /* The bucket a key goes to, made if need be, after growing the top-level table if it is full */
+    final Bucket bucketForPut(long fingerprint)
+    {
+        if(this.size >= this.capacity)
+        {
+            this.rehash(this.hashFamily.tableSize(this.size * 2));
+        }
+
+        final int index = this.hashFunction.hash(fingerprint);
+        if(this.buckets[index] == null)
+        {
+            this.buckets[index] = new Bucket(this);
+        }
+        return this.buckets[index];
+    }
+
+    /* Slot of the key in the bucket, -1 when absent or when there is no bucket */
+    static int slotOf(Bucket bucket, String key, long fingerprint)
+    {
+        return (bucket != null) ? bucket.slotOf(key, fingerprint) : -1;
+    }
+
+    /* Slot of the key in the bucket, after placing it there when it is absent. Placing it can replace the
+       values array of the bucket, so callers read bucket.values only once they have the slot */
+    final int slotForPut(Bucket bucket, String key, long fingerprint)
+    {
+        final int slot = bucket.slotOf(key, fingerprint);
+        if(slot >= 0)
+        {
+            return slot;
+        }
+
+        final int newSlot = bucket.add(key, fingerprint, this);
+        ++this.size;
+        return newSlot;
+    }
+
+    /* Redistributes every key, with its value, over a new top-level table of the given capacity.
+       Draws top-level functions until PerfectLinearHashSet.spreads() accepts one, so that the buckets stay
+       linear in size, then moves the keys in the order their fingerprints and buckets were collected in */
+    private void rehash(int newCapacity)
+    {
+        final Bucket[] oldBuckets = this.buckets;
+
+        final long[] fingerprints = new long[this.size];
+        int count = 0;
+        for(Bucket oldBucket : oldBuckets)
+        {
+            if(oldBucket == null) continue;
+
+            for(String key : oldBucket.keys)
+            {
+                if(key != null) fingerprints[count++] = HashFunction.fingerprint(key);
+            }
+        }
+
+        final int[] bucketIndices = new int[count];
+        final int[] bucketOffsets = new int[newCapacity + 1];
+        this.hashFunction = this.hashFamily.create(newCapacity, this.random);
+        while(!PerfectLinearHashSet.spreads(this.hashFunction, fingerprints, count, bucketIndices, bucketOffsets))
+        {
+            this.hashFunction = this.hashFamily.create(newCapacity, this.random);
+            Arrays.fill(bucketOffsets, 0);
+        }
+
+        this.capacity = newCapacity;
+        this.buckets = new Bucket[newCapacity];
+
+        int i = 0;
+        for(Bucket oldBucket : oldBuckets)
+        {
+            if(oldBucket == null) continue;
+
+            for(int s = 0 ; s < oldBucket.keys.length ; ++s)
+            {
+                final String key = oldBucket.keys[s];
+                if(key == null) continue;
+
+                final int index = bucketIndices[i];
+                if(this.buckets[index] == null)
+                {
+                    this.buckets[index] = new Bucket(this);
+                }
+
+                // Placed before its values array is read, as placing it can replace the array
+                final Bucket bucket = this.buckets[index];
+                final int slot = bucket.add(key, fingerprints[i], this);
+                System.arraycopy(oldBucket.values, s, bucket.values, slot, 1);
+                ++i;
+            }
+        }
+    }
+
+
+
+    /* Second-level table of one top-level bucket */
+
+    static final class Bucket
+    {
+        String[] keys;
+        short[] tags;
+        Object values;
+        int size;
+        /* Function of the bucket, null for a SEEDED bucket, which keeps only its seed */
+        private HashFunction hashFunction;
+        private long seed;
+
+        private Bucket(AbstractPerfectHashMap map)
+        {
+            final int capacity = map.hashFamily.tableSize(1);
+            this.keys = new String[capacity];
+            this.tags = new short[capacity];
+            this.values = map.newValues(capacity);
+
+            if(map.hashFamily == HashFamily.SEEDED)
+            {
+                this.seed = map.random.nextLong();
+            }
+            else
+            {
+                this.hashFunction = map.hashFamily.create(capacity, map.random);
+            }
+        }
+
+        /* Slot of the key, -1 when absent */
+        int slotOf(String key, long fingerprint)
+        {
+            final int slot = index(this.hashFunction, this.seed, this.keys.length, fingerprint);
+            return (this.tags[slot] == PerfectQuadraticHashSet.tag(fingerprint) && key.equals(this.keys[slot])) ? slot : -1;
+        }
+
+        private static int index(HashFunction hashFunction, long seed, int capacity, long fingerprint)
+        {
+            return (hashFunction != null) ? hashFunction.hash(fingerprint) : SeededHashing.hash(seed, capacity, fingerprint);
+        }
+
+        /* Places a key that is not in the bucket and returns its slot. The bucket grows to (2k)^2 slots once
+           k^2 reaches its capacity, and draws a new function when the key collides */
+        private int add(String key, long fingerprint, AbstractPerfectHashMap map)
+        {
+            long capacity = this.keys.length;
+            if((long) this.size * this.size >= capacity)
+            {
+                capacity = 4L * this.size * this.size;
+                if(capacity > MAX_BUCKET_CAPACITY)
+                {
+                    throw new IllegalArgumentException("A bucket of " + (this.size + 1) + " keys would need " + capacity + " slots");
+                }
+                capacity = map.hashFamily.tableSize((int) capacity);
+            }
+            else
+            {
+                final int slot = index(this.hashFunction, this.seed, this.keys.length, fingerprint);
+                if(this.keys[slot] == null)
+                {
+                    this.keys[slot] = key;
+                    this.tags[slot] = PerfectQuadraticHashSet.tag(fingerprint);
+                    ++this.size;
+                    return slot;
+                }
+            }
+
+            final int slot = this.rebuild((int) capacity, key, fingerprint, map);
+            ++this.size;
+            return slot;
+        }
+
+        /* Moves the keys and their values to tables of the given capacity together with the new key, drawing
+           functions until none collide, and returns the slot of the new key. The trials share one key and tag
+           table, cleared after a collision, and the values move once the keys fit. Throws
+           IllegalArgumentException, leaving the bucket as it was, when the new key shares its 64-bit
+           fingerprint with a key of the bucket */
+        private int rebuild(int capacity, String newKey, long newFingerprint, AbstractPerfectHashMap map)
+        {
+            final long[] fingerprints = new long[this.keys.length];
+            for(int s = 0 ; s < this.keys.length ; ++s)
+            {
+                if(this.keys[s] != null) fingerprints[s] = HashFunction.fingerprint(this.keys[s]);
+            }
+
+            final String[] keys = new String[capacity];
+            final short[] tags = new short[capacity];
+            final int[] slots = new int[this.keys.length];
+            HashFunction hashFunction = this.hashFunction;
+            long seed = this.seed;
+            for(int steps = 1 ; ; ++steps)
+            {
+                if(steps % SEED_STEPS_BEFORE_CHECK == 0)
+                {
+                    for(int s = 0 ; s < this.keys.length ; ++s)
+                    {
+                        if(this.keys[s] != null && fingerprints[s] == newFingerprint)
+                        {
+                            throw new IllegalArgumentException("Two distinct keys share the same 64-bit fingerprint");
+                        }
+                    }
+                }
+
+                if(hashFunction == null)
+                {
+                    seed = SeededHashing.nextSeed(seed);
+                }
+                else
+                {
+                    hashFunction = map.hashFamily.create(capacity, map.random);
+                }
+
+                final int newSlot = index(hashFunction, seed, capacity, newFingerprint);
+                keys[newSlot] = newKey;
+                tags[newSlot] = PerfectQuadraticHashSet.tag(newFingerprint);
+                boolean success = true;
+
+                for(int s = 0 ; s < this.keys.length ; ++s)
+                {
+                    if(this.keys[s] == null) continue;
+
+                    final int slot = index(hashFunction, seed, capacity, fingerprints[s]);
+                    if(keys[slot] != null)
+                    {
+                        success = false;
+                        break;
+                    }
+
+                    keys[slot] = this.keys[s];
+                    tags[slot] = this.tags[s];
+                    slots[s] = slot;
+                }
+
+                if(success)
+                {
+                    final Object values = map.newValues(capacity);
+                    for(int s = 0 ; s < this.keys.length ; ++s)
+                    {
+                        if(this.keys[s] != null) System.arraycopy(this.values, s, values, slots[s], 1);
+                    }
+
+                    this.hashFunction = hashFunction;
+                    this.seed = seed;
+                    this.keys = keys;
+                    this.tags = tags;
+                    this.values = values;
+                    return newSlot;
+                }
+
+                Arrays.fill(keys, null);
+                Arrays.fill(tags, (short) 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package perfecthashing.hashing;
+
+import java.util.Random;
+
+/* Options for building a perfect hash set from a list of keys */
+public class BuildOptions {
+
+    private HashFamily hashFamily = HashFamily.MATRIX;
+    private int parallelism = 1;
+    private boolean seeded = false;
+    private boolean threadSafe = false;
+    private boolean membershipFilter = false;
+    private int expectedKeys = 0;
+    private long seed;
+
+
+
+    /* Setters, returning the options to allow chaining */
+
+    public BuildOptions setHashFamily(HashFamily hashFamily)
+    {
+        this.hashFamily = hashFamily;
+        return this;
+    }
+
+    /* Number of worker threads building second-level tables; 1 builds on the calling thread */
+    public BuildOptions setParallelism(int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /* Fixes the randomness of the build so that the same keys always produce the same tables,
+       whatever the parallelism */
+    public BuildOptions setSeed(long seed)
+    {
+        this.seeded = true;
+        this.seed = seed;
+        return this;
+    }
+
+
+    /* Makes PerfectHashDictionary guard its backend for concurrent use: searches run without blocking,
+       inserts and deletes run in parallel across the buckets of a linear backend and are serialized otherwise */
+    public BuildOptions setThreadSafe(boolean threadSafe)
+    {
+        this.threadSafe = threadSafe;
+        return this;
+    }
+
+    /* Puts a MembershipFilter in front of the PerfectHashDictionary backend, so that most searches for absent
+       keys return before either hash level is evaluated: a CountingBloomFilter kept up to date by inserts
+       and deletes, or an XorFilter once the dictionary is static or frozen */
+    public BuildOptions setMembershipFilter(boolean membershipFilter)
+    {
+        this.membershipFilter = membershipFilter;
+        return this;
+    }
+
+    /* Number of keys the set is expected to hold, so that it is sized once instead of growing step by step */
+    public BuildOptions setExpectedKeys(int expectedKeys)
+    {
+        if (expectedKeys < 0)
+        {
+            throw new IllegalArgumentException("The expected key count cannot be negative, got " + expectedKeys);
+        }
+
+        this.expectedKeys = expectedKeys;
+        return this;
+    }
+
+
+
+    /* Getters */
+
+    public HashFamily getHashFamily()
+    {
+        return this.hashFamily;
+    }
+
+    public int getParallelism()
+    {
+        return this.parallelism;
+    }
+
+    public int getExpectedKeys()
+    {
+        return this.expectedKeys;
+    }
+
+    public boolean isThreadSafe()
+    {
+        return this.threadSafe;
+    }
+
+    public boolean hasMembershipFilter()
+    {
+        return this.membershipFilter;
+    }
+
+    public boolean isSeeded()
+    {
+        return this.seeded;
+    }
+
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    /* Source of randomness for a build: reproducible when a seed is set */
+    Random newRandom()
+    {
+        return this.seeded ? new Random(this.seed) : new Random();
+    }
+}
@@ -0,0 +1,358 @@
+package perfecthashing.hashing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/* Thread-safe PerfectLinearHashSet for write-heavy use.
+   Keys of different top-level buckets live in disjoint second-level sets, so inserts, deletes and
+   second-level rehashes only lock the stripe of their bucket, and run in parallel across stripes.
+   The top-level table is held in shared mode by every operation; only a top-level resize, which
+   rebuilds every bucket, takes it exclusively. The key count is kept here and written back into the
+   underlying set whenever it is handed out with writers locked out.
+   Searches read the table and their stripe optimistically, and only lock them after racing a writer */
+public class ConcurrentPerfectLinearHashSet implements IPerfectHashSet {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final PerfectLinearHashSet hashSet;
+    private final StampedLock tableLock;
+    private final StampedLock[] stripes;
+    private final AtomicInteger size;
+
+
+
+    /* Constructors */
+
+    /* Takes over a linear set, which must no longer be used directly. The stripe count is rounded up to a power of two */
+    public ConcurrentPerfectLinearHashSet(final PerfectLinearHashSet hashSet, final int stripes)
+    {
+        if(stripes < 1)
+        {
+            throw new IllegalArgumentException("The stripe count must be at least 1");
+        }
+
+        this.hashSet = hashSet;
+        this.tableLock = new StampedLock();
+
+        int stripeCount = 1;
+        while(stripeCount < stripes)
+        {
+            stripeCount <<= 1;
+        }
+
+        this.stripes = new StampedLock[stripeCount];
+        for(int i = 0 ; i < this.stripes.length ; ++i)
+        {
+            this.stripes[i] = new StampedLock();
+        }
+        this.size = new AtomicInteger(hashSet.getSize());
+    }
+
+    public ConcurrentPerfectLinearHashSet(final PerfectLinearHashSet hashSet)
+    {
+        this(hashSet, DEFAULT_STRIPES);
+    }
+
+    public ConcurrentPerfectLinearHashSet(final List<String> keys, final BuildOptions options)
+    {
+        this(keys.isEmpty() ? new PerfectLinearHashSet(options) : new PerfectLinearHashSet(keys, options));
+    }
+
+    public ConcurrentPerfectLinearHashSet(final BuildOptions options)
+    {
+        this(new PerfectLinearHashSet(options));
+    }
+
+    public ConcurrentPerfectLinearHashSet()
+    {
+        this(new BuildOptions());
+    }
+
+
+
+    /* Getters */
+
+    public int getSize()
+    {
+        return this.size.get();
+    }
+
+    public int getStripeCount()
+    {
+        return this.stripes.length;
+    }
+
+    /* Slots of all second-level tables; a bucket growing meanwhile may or may not be counted yet */
+    public long getInnerBucketsTotalCapacity()
+    {
+        final long stamp = this.tableLock.readLock();
+        try
+        {
+            return this.hashSet.getInnerBucketsTotalCapacity();
+        }
+        finally
+        {
+            this.tableLock.unlockRead(stamp);
+        }
+    }
+
+    /* The underlying set plus this view, its table lock, its stripes and its counter, taken with writers locked out */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            final long headerBytes = MemoryFootprint.objectBytes(4 * MemoryFootprint.REFERENCE)
+                    + (1L + this.stripes.length) * MemoryFootprint.STAMPED_LOCK
+                    + MemoryFootprint.arrayBytes(this.stripes.length, MemoryFootprint.REFERENCE)
+                    + MemoryFootprint.objectBytes(Integer.BYTES);
+            return this.hashSet.memoryFootprint().plusHeader(headerBytes);
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /* Freezes the current keys with writers locked out, see PerfectLinearHashSet.freeze */
+    public FrozenPerfectHashSet freeze()
+    {
+        return this.freeze(FrozenPerfectHashSet.KeyStorage.STRINGS);
+    }
+
+    public FrozenPerfectHashSet freeze(FrozenPerfectHashSet.KeyStorage keyStorage)
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            this.hashSet.setSize(this.size.get());
+            return this.hashSet.freeze(keyStorage);
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /* The underlying set with its key count brought up to date, only consistent while no other thread uses this one */
+    public PerfectLinearHashSet getHashSet()
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            this.hashSet.setSize(this.size.get());
+            return this.hashSet;
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /* Writes the current keys with writers locked out, see MappedPerfectHashSet.save */
+    public void save(final Path path) throws IOException
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            this.hashSet.setSize(this.size.get());
+            MappedPerfectHashSet.save(this.hashSet, path);
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /* Lists the current keys with writers locked out */
+    @Override
+    public void forEachKey(final Consumer<String> action)
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            this.hashSet.forEachKey(action);
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+
+
+    private StampedLock stripeOf(final int index)
+    {
+        return this.stripes[index & (this.stripes.length - 1)];
+    }
+
+    /* Grows the top-level table with every bucket locked out, unless another thread already did */
+
+    private void resizeIfFull()
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            if(this.size.get() >= this.hashSet.getTotalCapacity())
+            {
+                this.hashSet.resize(this.size.get());
+            }
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void reserve(final int expectedKeys)
+    {
+        final long stamp = this.tableLock.writeLock();
+        try
+        {
+            this.hashSet.reserve(this.size.get(), expectedKeys);
+        }
+        finally
+        {
+            this.tableLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean insert(final String key)
+    {
+        if(this.size.get() >= this.hashSet.getTotalCapacity())
+        {
+            this.resizeIfFull();
+        }
+
+        final long fingerprint = HashFunction.fingerprint(key);
+
+        final long tableStamp = this.tableLock.readLock();
+        try
+        {
+            final int index = this.hashSet.indexOf(fingerprint);
+            final StampedLock stripe = this.stripeOf(index);
+
+            final long stamp = stripe.writeLock();
+            try
+            {
+                if(!this.hashSet.bucketAt(index, true).insert(key, fingerprint))
+                {
+                    return false;
+                }
+
+                // Counted under the table lock so that a resize sees every key it rebuilds
+                this.size.incrementAndGet();
+                return true;
+            }
+            finally
+            {
+                stripe.unlockWrite(stamp);
+            }
+        }
+        finally
+        {
+            this.tableLock.unlockRead(tableStamp);
+        }
+    }
+
+    @Override
+    public boolean delete(final String key)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+
+        final long tableStamp = this.tableLock.readLock();
+        try
+        {
+            final int index = this.hashSet.indexOf(fingerprint);
+            final StampedLock stripe = this.stripeOf(index);
+
+            final long stamp = stripe.writeLock();
+            try
+            {
+                final PerfectQuadraticHashSet bucket = this.hashSet.bucketAt(index, false);
+                if(bucket == null || !bucket.delete(key, fingerprint))
+                {
+                    return false;
+                }
+
+                this.size.decrementAndGet();
+                return true;
+            }
+            finally
+            {
+                stripe.unlockWrite(stamp);
+            }
+        }
+        finally
+        {
+            this.tableLock.unlockRead(tableStamp);
+        }
+    }
+
+    /* Lock-free unless a writer ran meanwhile: the table and the stripe are read under optimistic stamps,
+       and the lookup is only repeated under their read locks when either stamp fails to validate */
+    @Override
+    public boolean search(final String key)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+
+        final long tableStamp = this.tableLock.tryOptimisticRead();
+        if(tableStamp != 0)
+        {
+            StampedLock stripe = null;
+            long stamp = 0;
+            try
+            {
+                final int index = this.hashSet.indexOf(fingerprint);
+                stripe = this.stripeOf(index);
+                stamp = stripe.tryOptimisticRead();
+                if(stamp != 0)
+                {
+                    final PerfectQuadraticHashSet bucket = this.hashSet.bucketAt(index, false);
+                    final boolean found = bucket != null && bucket.search(key, fingerprint);
+                    if(stripe.validate(stamp) && this.tableLock.validate(tableStamp))
+                    {
+                        return found;
+                    }
+                }
+            }
+            catch(RuntimeException e)
+            {
+                // A rehash or resize in progress can leave a table and its function out of step
+                if(stamp != 0 && stripe.validate(stamp) && this.tableLock.validate(tableStamp))
+                {
+                    throw e;
+                }
+            }
+        }
+
+        final long lockedTableStamp = this.tableLock.readLock();
+        try
+        {
+            final int index = this.hashSet.indexOf(fingerprint);
+            final StampedLock stripe = this.stripeOf(index);
+
+            final long stamp = stripe.readLock();
+            try
+            {
+                final PerfectQuadraticHashSet bucket = this.hashSet.bucketAt(index, false);
+                return bucket != null && bucket.search(key, fingerprint);
+            }
+            finally
+            {
+                stripe.unlockRead(stamp);
+            }
+        }
+        finally
+        {
+            this.tableLock.unlockRead(lockedTableStamp);
+        }
+    }
+}
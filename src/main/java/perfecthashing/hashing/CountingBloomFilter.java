@@ -0,0 +1,154 @@
+package perfecthashing.hashing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Blocked counting Bloom filter for sets that keep changing.
+   A key is sent to one block of 128 4-bit counters, eight longs that share a cache line, and raises
+   PROBES counters in it, so a lookup costs one cache miss whatever the probe count. Counters rather than
+   bits let remove() take a deleted key back out; a counter that reaches 15 sticks there, which can only
+   leave a false positive behind, never a false negative. Updates are compare-and-set loops, so threads
+   may add and remove concurrently */
+public class CountingBloomFilter implements MembershipFilter {
+
+    /* Counters per key the filter is sized for, and counters raised per key: about 0.5% false positives */
+    private static final int COUNTERS_PER_KEY = 12;
+    private static final int PROBES = 7;
+
+    private static final int COUNTER_BITS = 4;
+    private static final long SATURATED = (1L << COUNTER_BITS) - 1;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int COUNTERS_PER_BLOCK = COUNTERS_PER_WORD * WORDS_PER_BLOCK;
+
+    /* The filter object: two references and two ints, the AtomicLongArray and the AtomicInteger */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(2 * MemoryFootprint.REFERENCE + 2 * Integer.BYTES)
+            + MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE) + MemoryFootprint.objectBytes(Integer.BYTES);
+
+    private final AtomicLongArray counters;
+    private final int blocks;
+    private final int capacity;
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+
+
+    /* Constructors */
+
+    /* An empty filter holding up to capacity keys at its intended false positive rate */
+    public CountingBloomFilter(int capacity)
+    {
+        if(capacity < 0)
+        {
+            throw new IllegalArgumentException("The filter capacity cannot be negative, got " + capacity);
+        }
+
+        final long blocks = Math.max(1, ((long) capacity * COUNTERS_PER_KEY + COUNTERS_PER_BLOCK - 1) / COUNTERS_PER_BLOCK);
+        if(blocks * WORDS_PER_BLOCK > Integer.MAX_VALUE - 8)
+        {
+            throw new IllegalArgumentException("A filter for " + capacity + " keys needs more than one array of counters");
+        }
+
+        this.blocks = (int) blocks;
+        this.capacity = capacity;
+        this.counters = new AtomicLongArray(this.blocks * WORDS_PER_BLOCK);
+    }
+
+
+
+    /* Getters */
+
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /* Keys added and not removed since */
+    public int getKeyCount()
+    {
+        return this.keyCount.get();
+    }
+
+    @Override
+    public long memoryFootprint()
+    {
+        return MemoryFootprint.arrayBytes(this.counters.length(), Long.BYTES) + SHALLOW_BYTES;
+    }
+
+
+
+    /* Adds a key; a key added twice has to be removed twice */
+    public void add(long fingerprint)
+    {
+        final long hash = HashFunction.mix(fingerprint);
+        final int first = this.firstWord(hash);
+        long probes = HashFunction.mix(hash);
+
+        for(int p = 0 ; p < PROBES ; ++p, probes >>>= 7)
+        {
+            final int counter = (int) (probes & (COUNTERS_PER_BLOCK - 1));
+            final int word = first + counter / COUNTERS_PER_WORD;
+            final int shift = (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+
+            long value;
+            do
+            {
+                value = this.counters.get(word);
+                if(((value >>> shift) & SATURATED) == SATURATED) break;
+            }
+            while(!this.counters.compareAndSet(word, value, value + (1L << shift)));
+        }
+
+        this.keyCount.incrementAndGet();
+    }
+
+    /* Removes a key that was added */
+    public void remove(long fingerprint)
+    {
+        final long hash = HashFunction.mix(fingerprint);
+        final int first = this.firstWord(hash);
+        long probes = HashFunction.mix(hash);
+
+        for(int p = 0 ; p < PROBES ; ++p, probes >>>= 7)
+        {
+            final int counter = (int) (probes & (COUNTERS_PER_BLOCK - 1));
+            final int word = first + counter / COUNTERS_PER_WORD;
+            final int shift = (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+
+            long value;
+            do
+            {
+                value = this.counters.get(word);
+                final long count = (value >>> shift) & SATURATED;
+                if(count == SATURATED || count == 0) break;
+            }
+            while(!this.counters.compareAndSet(word, value, value - (1L << shift)));
+        }
+
+        this.keyCount.decrementAndGet();
+    }
+
+    @Override
+    public boolean mightContain(long fingerprint)
+    {
+        final long hash = HashFunction.mix(fingerprint);
+        final int first = this.firstWord(hash);
+        long probes = HashFunction.mix(hash);
+
+        for(int p = 0 ; p < PROBES ; ++p, probes >>>= 7)
+        {
+            final int counter = (int) (probes & (COUNTERS_PER_BLOCK - 1));
+            final long value = this.counters.get(first + counter / COUNTERS_PER_WORD);
+            if(((value >>> ((counter % COUNTERS_PER_WORD) * COUNTER_BITS)) & SATURATED) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* First word of the block of a key, picked from the high half of its hash with a multiply-high */
+    private int firstWord(long hash)
+    {
+        return (int) (((hash >>> Integer.SIZE) * this.blocks) >>> Integer.SIZE) * WORDS_PER_BLOCK;
+    }
+}
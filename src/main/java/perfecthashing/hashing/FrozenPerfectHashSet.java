@@ -0,0 +1,325 @@
+package perfecthashing.hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/* Read-only PerfectLinearHashSet flattened into a few arrays.
+   The buckets are laid out one after the other in a single slot array: bucket b owns the slots
+   [offsets[b], offsets[b + 1]) and places its keys with the SeededHashing function of seeds[b].
+   Every bucket is rebuilt at the minimal k^2 slots for its k keys. A lookup evaluates the top-level
+   function, then reads two neighbouring offsets, one seed and one slot, instead of walking from the
+   bucket array to a bucket object, its function object and its own slot array.
+   insert and delete throw UnsupportedOperationException */
+public class FrozenPerfectHashSet implements IPerfectHashSet {
+
+    /* How the keys themselves are kept */
+    public enum KeyStorage
+    {
+        /* A String reference per slot: the fastest comparisons */
+        STRINGS,
+
+        /* The UTF-8 bytes of every key in one byte array, in slot order, so that slot s holds the bytes
+           [keyBounds[s], keyBounds[s + 1]) and an empty slot holds none. Keys are compared on their bytes,
+           so keys with an unpaired surrogate, which UTF-8 cannot encode, are refused.
+           Saves the String and byte[] headers of every key, and gives the garbage collector one array to mark */
+        ARENA
+    }
+
+    /* The set object: seven references, an int and a boolean */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(7 * MemoryFootprint.REFERENCE + Integer.BYTES + 1);
+
+    /* A heap ByteBuffer wrapping the arena */
+    private static final long BYTE_BUFFER_BYTES = 48;
+
+    private final HashFunction topFunction;
+    private final int[] offsets;
+    private final long[] seeds;
+    private final int size;
+
+    private final String[] slots;
+    private final byte[] arena;
+    private final ByteBuffer arenaBuffer;
+    private final int[] keyBounds;
+
+    /* The empty key has no bytes to tell its slot from an empty one in the arena, so it is tracked apart */
+    private final boolean holdsEmptyKey;
+
+
+
+    /* Constructors */
+
+    /* Freezes the current keys of a linear set, which is left unchanged */
+    public FrozenPerfectHashSet(PerfectLinearHashSet hashSet, KeyStorage keyStorage)
+    {
+        final PerfectQuadraticHashSet[] buckets = hashSet.getBuckets();
+
+        this.topFunction = hashSet.getHashFunction();
+        this.offsets = new int[buckets.length + 1];
+        this.seeds = new long[buckets.length];
+
+        long slotCount = 0;
+        for(int b = 0 ; b < buckets.length ; ++b)
+        {
+            final long keys = (buckets[b] == null) ? 0 : buckets[b].getSize();
+            slotCount += keys * keys;
+            if(slotCount > Integer.MAX_VALUE - 8)
+            {
+                throw new IllegalArgumentException("The buckets need more than one array of slots");
+            }
+            this.offsets[b + 1] = (int) slotCount;
+        }
+        final String[] slots = new String[(int) slotCount];
+
+        final String[] keys = new String[buckets.length == 0 ? 0 : maxBucketSize(buckets)];
+        final long[] fingerprints = new long[keys.length];
+
+        // Counted as the keys are placed, as the source set's own counter may lag behind a concurrent wrapper
+        int size = 0;
+        for(int b = 0 ; b < buckets.length ; ++b)
+        {
+            if(this.offsets[b] == this.offsets[b + 1]) continue;
+
+            int count = 0;
+            for(String key : buckets[b].getHashSet())
+            {
+                if(key == null) continue;
+
+                keys[count] = key;
+                fingerprints[count] = HashFunction.fingerprint(key);
+                ++count;
+            }
+
+            this.seeds[b] = placeBucket(slots, this.offsets[b], count * count, keys, fingerprints, count, HashFunction.mix(b));
+            size += count;
+        }
+        this.size = size;
+
+        if(keyStorage == KeyStorage.ARENA)
+        {
+            this.slots = null;
+            this.keyBounds = new int[slots.length + 1];
+
+            final byte[][] encoded = new byte[slots.length][];
+            long arenaSize = 0;
+            boolean holdsEmptyKey = false;
+            for(int s = 0 ; s < slots.length ; ++s)
+            {
+                if(slots[s] == null) continue;
+
+                if(Utf8.encodedLength(slots[s]) < 0)
+                {
+                    throw new IllegalArgumentException("Key " + slots[s] + " holds an unpaired surrogate, use KeyStorage.STRINGS");
+                }
+                encoded[s] = slots[s].getBytes(StandardCharsets.UTF_8);
+                holdsEmptyKey |= encoded[s].length == 0;
+                arenaSize += encoded[s].length;
+            }
+            if(arenaSize > Integer.MAX_VALUE - 8)
+            {
+                throw new IllegalArgumentException("The keys take more than one array of bytes");
+            }
+
+            this.arena = new byte[(int) arenaSize];
+            int position = 0;
+            for(int s = 0 ; s < slots.length ; ++s)
+            {
+                if(encoded[s] != null)
+                {
+                    System.arraycopy(encoded[s], 0, this.arena, position, encoded[s].length);
+                    position += encoded[s].length;
+                }
+                this.keyBounds[s + 1] = position;
+            }
+            this.arenaBuffer = ByteBuffer.wrap(this.arena);
+            this.holdsEmptyKey = holdsEmptyKey;
+        }
+        else
+        {
+            this.slots = slots;
+            this.arena = null;
+            this.arenaBuffer = null;
+            this.keyBounds = null;
+            this.holdsEmptyKey = false;
+        }
+    }
+
+    public FrozenPerfectHashSet(PerfectLinearHashSet hashSet)
+    {
+        this(hashSet, KeyStorage.STRINGS);
+    }
+
+    public FrozenPerfectHashSet(List<String> keys, BuildOptions options, KeyStorage keyStorage)
+    {
+        this(new PerfectLinearHashSet(keys, options), keyStorage);
+    }
+
+    public FrozenPerfectHashSet(List<String> keys)
+    {
+        this(keys, new BuildOptions(), KeyStorage.STRINGS);
+    }
+
+
+
+    /* Steps the seed from its start until the count keys land in distinct slots of [from, from + capacity),
+       stores them there and returns the seed */
+
+    private static long placeBucket(String[] slots, int from, int capacity, String[] keys, long[] fingerprints, int count, long seed)
+    {
+        while(true)
+        {
+            int placed = 0;
+            while(placed < count)
+            {
+                final int slot = from + SeededHashing.hash(seed, capacity, fingerprints[placed]);
+                if(slots[slot] != null) break;
+
+                slots[slot] = keys[placed++];
+            }
+
+            if(placed == count)
+            {
+                return seed;
+            }
+
+            for(int i = 0 ; i < placed ; ++i)
+            {
+                slots[from + SeededHashing.hash(seed, capacity, fingerprints[i])] = null;
+            }
+            seed = SeededHashing.nextSeed(seed);
+        }
+    }
+
+    private static int maxBucketSize(PerfectQuadraticHashSet[] buckets)
+    {
+        int max = 0;
+        for(PerfectQuadraticHashSet bucket : buckets)
+        {
+            if(bucket == null) continue;
+
+            max = Math.max(max, bucket.getSize());
+        }
+        return max;
+    }
+
+
+
+    /* Getters */
+
+    @Override
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    public int getBucketCount()
+    {
+        return this.seeds.length;
+    }
+
+    public int getSlotCount()
+    {
+        return this.offsets[this.offsets.length - 1];
+    }
+
+    public KeyStorage getKeyStorage()
+    {
+        return (this.slots != null) ? KeyStorage.STRINGS : KeyStorage.ARENA;
+    }
+
+    /* Slot array or arena and key bounds, offsets and seeds, the top-level function and the set object */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        long keyBytes = 0;
+        long slotBytes = MemoryFootprint.arrayBytes(this.offsets.length, Integer.BYTES);
+
+        if(this.slots != null)
+        {
+            for(String key : this.slots)
+            {
+                if(key == null) continue;
+
+                keyBytes += MemoryFootprint.stringBytes(key);
+            }
+            slotBytes += MemoryFootprint.arrayBytes(this.slots.length, MemoryFootprint.REFERENCE);
+        }
+        else
+        {
+            keyBytes += MemoryFootprint.arrayBytes(this.arena.length, Byte.BYTES) + BYTE_BUFFER_BYTES;
+            slotBytes += MemoryFootprint.arrayBytes(this.keyBounds.length, Integer.BYTES);
+        }
+
+        final long hashFunctionBytes = this.topFunction.memoryFootprint() + MemoryFootprint.arrayBytes(this.seeds.length, Long.BYTES);
+        return new MemoryFootprint(keyBytes, slotBytes, hashFunctionBytes, SHALLOW_BYTES);
+    }
+
+
+
+    @Override
+    public void forEachKey(Consumer<String> action)
+    {
+        if(this.slots != null)
+        {
+            for(String key : this.slots)
+            {
+                if(key != null) action.accept(key);
+            }
+            return;
+        }
+
+        if(this.holdsEmptyKey)
+        {
+            action.accept("");
+        }
+        for(int s = 0 ; s < this.keyBounds.length - 1 ; ++s)
+        {
+            if(this.keyBounds[s] == this.keyBounds[s + 1]) continue;
+
+            action.accept(new String(this.arena, this.keyBounds[s], this.keyBounds[s + 1] - this.keyBounds[s], StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public boolean insert(String key)
+    {
+        throw new UnsupportedOperationException("A frozen perfect hash set is read-only");
+    }
+
+    @Override
+    public boolean delete(String key)
+    {
+        throw new UnsupportedOperationException("A frozen perfect hash set is read-only");
+    }
+
+    @Override
+    public boolean search(String key)
+    {
+        if(this.slots == null && key.isEmpty())
+        {
+            return this.holdsEmptyKey;
+        }
+
+        final long fingerprint = HashFunction.fingerprint(key);
+        final int bucket = this.topFunction.hash(fingerprint);
+        final int from = this.offsets[bucket];
+        final int capacity = this.offsets[bucket + 1] - from;
+
+        if(capacity == 0)
+        {
+            return false;
+        }
+
+        final int slot = from + SeededHashing.hash(this.seeds[bucket], capacity, fingerprint);
+
+        if(this.slots != null)
+        {
+            final String candidate = this.slots[slot];
+            return (candidate != null && candidate.equals(key));
+        }
+
+        final int keyStart = this.keyBounds[slot];
+        return Utf8.equals(this.arenaBuffer, keyStart, this.keyBounds[slot + 1] - keyStart, key);
+    }
+}
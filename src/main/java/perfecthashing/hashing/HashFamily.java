@@ -0,0 +1,90 @@
+package perfecthashing.hashing;
+
+import java.util.Random;
+import java.util.StringJoiner;
+
+/* Universal hash families the perfect hash sets can draw their hash functions from */
+public enum HashFamily {
+
+    /* Random GF(2) matrix multiplication (UniversalHashing) */
+    MATRIX
+    {
+        @Override
+        public HashFunction create(int capacity, Random random)
+        {
+            return new UniversalHashing(Integer.SIZE, capacity, random);
+        }
+    },
+
+    /* Dietzfelbinger multiply-shift, restricted to power-of-two tables */
+    MULTIPLY_SHIFT
+    {
+        @Override
+        public HashFunction create(int capacity, Random random)
+        {
+            return new MultiplyShiftHashing(capacity, random);
+        }
+
+        @Override
+        public int tableSize(int capacity)
+        {
+            return MultiplyShiftHashing.tableSize(capacity);
+        }
+    },
+
+    /* Simple tabulation over the bytes of the key fingerprint */
+    TABULATION
+    {
+        @Override
+        public HashFunction create(int capacity, Random random)
+        {
+            return new TabulationHashing(capacity, random);
+        }
+    },
+
+    /* SplitMix64 of the fingerprint and a 64-bit seed (SeededHashing). Quadratic tables keep only the seed,
+       and draw new functions by stepping it. Declared last, as saved files store the family ordinal */
+    SEEDED
+    {
+        @Override
+        public HashFunction create(int capacity, Random random)
+        {
+            return new SeededHashing(capacity, random);
+        }
+    };
+
+
+    /* Draws a function of this family mapping into [0, capacity) from the given source of randomness */
+    public abstract HashFunction create(int capacity, Random random);
+
+    /* Draws a random function of this family mapping into [0, capacity) */
+    public HashFunction create(int capacity)
+    {
+        return this.create(capacity, new Random());
+    }
+
+    /* Returns the table size this family needs to cover at least the requested capacity */
+    public int tableSize(int capacity)
+    {
+        return capacity;
+    }
+
+    /* Parses a family name such as "matrix", "multiply-shift" or "tabulation".
+       Throws IllegalArgumentException listing the valid names for any other name */
+    public static HashFamily forName(String name)
+    {
+        final String normalized = name.trim().toUpperCase().replace('-', '_');
+        final StringJoiner names = new StringJoiner(", ");
+
+        for (HashFamily family : values())
+        {
+            if (family.name().equals(normalized))
+            {
+                return family;
+            }
+            names.add(family.name().toLowerCase().replace('_', '-'));
+        }
+
+        throw new IllegalArgumentException("Unknown hash family \"" + name.trim() + "\", expected one of: " + names);
+    }
+}
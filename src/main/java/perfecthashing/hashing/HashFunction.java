@@ -0,0 +1,48 @@
+package perfecthashing.hashing;
+
+public interface HashFunction {
+
+    /* Maps a key fingerprint to an index in [0, capacity) */
+    int hash(long fingerprint);
+
+    /* Estimated heap bytes of the function, see MemoryFootprint for the assumptions */
+    long memoryFootprint();
+
+    /* Maps a key to an index in [0, capacity) */
+    default int hash(String key)
+    {
+        return this.hash(fingerprint(key));
+    }
+
+    /* Reduces a key to the 64-bit fingerprint every hash family operates on.
+       Callers hashing the same key at several levels compute it once and reuse it.
+       The polynomial leaves keys that differ near their start with nearly the same low bits, which are
+       all a small matrix function reads, so it is finalized with mix to spread every character over the word */
+    static long fingerprint(String key)
+    {
+        // Improve the hashing to reduce collisions
+        long hash = 0;
+
+        // Use multiple mixing techniques for better distribution
+        for (int i = 0; i < key.length(); i++)
+        {
+            hash = 31 * hash + key.charAt(i);
+            // Add rotations for better bit distribution
+            hash = (hash << 5) | (hash >>> 59);
+        }
+
+        // Add key length influence
+        hash = hash ^ key.length();
+
+        // A bijection, so that keys only share a fingerprint when they share the polynomial
+        return mix(hash);
+    }
+
+    /* SplitMix64 finalizer, used to derive well spread seeds from a base seed and a counter */
+    static long mix(long value)
+    {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,5 +1,9 @@
 package perfecthashing.hashing;
 
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface IPerfectHashSet {
 
     /* Inserts an entry to the hash set */
@@ -11,4 +15,72 @@ public interface IPerfectHashSet {
     /* Returns true if the key exists in the hash set */
     boolean search(String key);
 
+    /* Returns the number of keys in the hash set */
+    int getSize();
+
+    /* Estimated bytes held by the set, broken down into keys, slots, hash functions and headers */
+    MemoryFootprint memoryFootprint();
+
+    /* Makes room for expectedKeys keys in total, so that inserting up to that many pays for one rebuild
+       now instead of repeated resizes. Does nothing for sets that are already large enough or immutable */
+    default void reserve(int expectedKeys)
+    {
+    }
+
+    /* Passes every key held to the action, in no particular order.
+       Sets that do not enumerate their keys throw UnsupportedOperationException */
+    default void forEachKey(Consumer<String> action)
+    {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not enumerate its keys");
+    }
+
+
+    /* Bulk operations: bit i of the result holds the outcome of the single-key operation on the i-th key.
+       Keys are processed in order, so a key repeated in one batch is only inserted or deleted once */
+
+    default BitSet insertAll(String[] keys)
+    {
+        final BitSet inserted = new BitSet(keys.length);
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            if(this.insert(keys[i])) inserted.set(i);
+        }
+        return inserted;
+    }
+
+    default BitSet deleteAll(String[] keys)
+    {
+        final BitSet deleted = new BitSet(keys.length);
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            if(this.delete(keys[i])) deleted.set(i);
+        }
+        return deleted;
+    }
+
+    default BitSet searchAll(String[] keys)
+    {
+        final BitSet found = new BitSet(keys.length);
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            if(this.search(keys[i])) found.set(i);
+        }
+        return found;
+    }
+
+    default BitSet insertAll(List<String> keys)
+    {
+        return this.insertAll(keys.toArray(new String[0]));
+    }
+
+    default BitSet deleteAll(List<String> keys)
+    {
+        return this.deleteAll(keys.toArray(new String[0]));
+    }
+
+    default BitSet searchAll(List<String> keys)
+    {
+        return this.searchAll(keys.toArray(new String[0]));
+    }
+
 }
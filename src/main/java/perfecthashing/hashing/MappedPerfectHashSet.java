@@ -0,0 +1,386 @@
+package perfecthashing.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/* Read-only perfect hash set served straight from a memory-mapped file written by save().
+   Lookups evaluate the stored hash functions and compare the stored UTF-8 key bytes in place,
+   so loading only maps the file and checks its header, without rebuilding, copying or reading the
+   sections: pages are faulted in by the lookups that need them. verify() checks the whole file.
+
+   File layout (big-endian, all offsets are absolute ints):
+     header       magic, version, hash family, size, bucket count, top-level function offset (-1 if none),
+                  bucket table offset, slots offset, keys offset, CRC32 of the header fields before it
+     functions    the top-level function followed by one function per non-empty bucket, 8-byte aligned
+     bucket table capacity, first slot, function offset for every bucket (capacity 0 for an empty bucket)
+     slots        one int per slot: the key offset relative to the keys section, or -1 for an empty slot
+     keys         every key as its UTF-8 byte length followed by the bytes
+     trailer      CRC32 of everything before it, as a long */
+public class MappedPerfectHashSet implements IPerfectHashSet {
+
+    private static final int MAGIC = 0x50485346; // "PHSF"
+    /* 2: fingerprints are finalized with HashFunction.mix
+       3: the header carries its own checksum, so that loading does not read the whole file */
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 10 * Integer.BYTES;
+    private static final int HEADER_CHECKSUM_OFFSET = HEADER_SIZE - Integer.BYTES;
+    private static final int BUCKET_ENTRY_SIZE = 3 * Integer.BYTES;
+    private static final int TRAILER_SIZE = Long.BYTES;
+    private static final int EMPTY_SLOT = -1;
+
+    private final ByteBuffer buffer;
+    private final HashFamily hashFamily;
+    private final int size;
+    private final int bucketCount;
+    private final int topFunctionOffset;
+    private final int bucketTableOffset;
+    private final int slotsOffset;
+    private final int keysOffset;
+
+
+
+    private MappedPerfectHashSet(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.capacity() < HEADER_SIZE + TRAILER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a perfect hash set file");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION)
+        {
+            throw new IOException("Unsupported perfect hash set file version " + buffer.getInt(Integer.BYTES));
+        }
+
+        if (buffer.getInt(HEADER_CHECKSUM_OFFSET) != (int) checksum(buffer, HEADER_CHECKSUM_OFFSET))
+        {
+            throw new IOException("Perfect hash set file is corrupted (header checksum mismatch)");
+        }
+
+        final int hashFamilyOrdinal = buffer.getInt(2 * Integer.BYTES);
+        if (hashFamilyOrdinal < 0 || hashFamilyOrdinal >= HashFamily.values().length)
+        {
+            throw new IOException("Unknown hash family " + hashFamilyOrdinal + " in perfect hash set file");
+        }
+
+        this.buffer = buffer;
+        this.hashFamily = HashFamily.values()[hashFamilyOrdinal];
+        this.size = buffer.getInt(3 * Integer.BYTES);
+        this.bucketCount = buffer.getInt(4 * Integer.BYTES);
+        this.topFunctionOffset = buffer.getInt(5 * Integer.BYTES);
+        this.bucketTableOffset = buffer.getInt(6 * Integer.BYTES);
+        this.slotsOffset = buffer.getInt(7 * Integer.BYTES);
+        this.keysOffset = buffer.getInt(8 * Integer.BYTES);
+
+        // The sections must lie in order inside the file, so that no lookup reads past the mapping
+        if (this.size < 0 || this.bucketCount < 0
+            || (this.topFunctionOffset != -1 && (this.topFunctionOffset < HEADER_SIZE || this.topFunctionOffset >= this.bucketTableOffset))
+            || this.bucketTableOffset < HEADER_SIZE
+            || this.slotsOffset != this.bucketTableOffset + (long) this.bucketCount * BUCKET_ENTRY_SIZE
+            || this.keysOffset < this.slotsOffset || this.keysOffset > buffer.capacity() - TRAILER_SIZE)
+        {
+            throw new IOException("Perfect hash set file has an inconsistent section table");
+        }
+    }
+
+
+
+    /* Saving */
+
+    public static void save(PerfectLinearHashSet hashSet, Path path) throws IOException
+    {
+        write(path, hashSet.getHashFamily(), hashSet.getSize(), hashSet.getHashFunction(), hashSet.getBuckets());
+    }
+
+    public static void save(PerfectQuadraticHashSet hashSet, Path path) throws IOException
+    {
+        write(path, hashSet.getHashFamily(), hashSet.getSize(), null, new PerfectQuadraticHashSet[] { hashSet });
+    }
+
+    private static void write(Path path, HashFamily hashFamily, int size, HashFunction topFunction,
+                              PerfectQuadraticHashSet[] buckets) throws IOException
+    {
+        // First pass: lays out the sections
+        long position = HEADER_SIZE;
+        final int topFunctionOffset = (topFunction == null) ? -1 : (int) position;
+        if (topFunction != null)
+        {
+            position = align(position + serializedSize(hashFamily, topFunction));
+        }
+
+        long totalSlots = 0;
+        long keyBytes = 0;
+        for (PerfectQuadraticHashSet bucket : buckets)
+        {
+            if (bucket == null) continue;
+
+            position = align(position + serializedSize(hashFamily, bucket.getHashFunction()));
+            totalSlots += bucket.getCapacity();
+            for (String key : bucket.getHashSet())
+            {
+                if (key == null) continue;
+
+                final int encodedLength = Utf8.encodedLength(key);
+                if (encodedLength < 0)
+                {
+                    throw new IOException("Key " + key + " holds an unpaired surrogate and has no UTF-8 encoding");
+                }
+                keyBytes += Integer.BYTES + encodedLength;
+            }
+        }
+
+        final long bucketTableOffset = position;
+        final long slotsOffset = bucketTableOffset + (long) buckets.length * BUCKET_ENTRY_SIZE;
+        final long keysOffset = slotsOffset + totalSlots * Integer.BYTES;
+        final long length = keysOffset + keyBytes + TRAILER_SIZE;
+
+        if (length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Perfect hash set needs " + length + " bytes, more than a single 2 GB mapping");
+        }
+
+        // Written beside the target and moved over it, so that a set still mapping the old file never sees it truncated
+        final Path target = path.toAbsolutePath();
+        final Path temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                final MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+
+                out.putInt(MAGIC).putInt(VERSION).putInt(hashFamily.ordinal()).putInt(size).putInt(buckets.length)
+                   .putInt(topFunctionOffset).putInt((int) bucketTableOffset).putInt((int) slotsOffset)
+                   .putInt((int) keysOffset);
+                out.putInt((int) checksum(out, HEADER_CHECKSUM_OFFSET));
+
+                // Second pass: functions, bucket entries, slots and keys, each section written sequentially
+                final ByteBuffer slots = out.duplicate();
+                slots.position((int) slotsOffset);
+                final ByteBuffer keys = out.duplicate();
+                keys.position((int) keysOffset);
+
+                if (topFunction != null)
+                {
+                    writeFunction(out, hashFamily, topFunction);
+                    out.position((int) align(out.position()));
+                }
+
+                int slot = 0;
+                for (int b = 0; b < buckets.length; ++b)
+                {
+                    final PerfectQuadraticHashSet bucket = buckets[b];
+                    final int entry = (int) bucketTableOffset + b * BUCKET_ENTRY_SIZE;
+
+                    if (bucket == null)
+                    {
+                        out.putInt(entry, 0).putInt(entry + Integer.BYTES, 0).putInt(entry + 2 * Integer.BYTES, 0);
+                        continue;
+                    }
+
+                    out.putInt(entry, bucket.getCapacity()).putInt(entry + Integer.BYTES, slot)
+                       .putInt(entry + 2 * Integer.BYTES, out.position());
+                    writeFunction(out, hashFamily, bucket.getHashFunction());
+                    out.position((int) align(out.position()));
+
+                    for (String key : bucket.getHashSet())
+                    {
+                        ++slot;
+
+                        if (key == null)
+                        {
+                            slots.putInt(EMPTY_SLOT);
+                            continue;
+                        }
+
+                        final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                        slots.putInt(keys.position() - (int) keysOffset);
+                        keys.putInt(bytes.length).put(bytes);
+                    }
+                }
+
+                final int checksumOffset = (int) length - TRAILER_SIZE;
+                out.putLong(checksumOffset, checksum(out, checksumOffset));
+                out.force();
+            }
+
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static long align(long position)
+    {
+        return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /* CRC32 of the first length bytes */
+    private static long checksum(ByteBuffer buffer, int length)
+    {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(0).limit(length);
+
+        final CRC32 crc = new CRC32();
+        crc.update(view);
+        return crc.getValue();
+    }
+
+    private static int serializedSize(HashFamily hashFamily, HashFunction hashFunction)
+    {
+        switch (hashFamily)
+        {
+            case MATRIX:
+                return ((UniversalHashing) hashFunction).serializedSize();
+            case MULTIPLY_SHIFT:
+                return ((MultiplyShiftHashing) hashFunction).serializedSize();
+            case SEEDED:
+                return ((SeededHashing) hashFunction).serializedSize();
+            default:
+                return ((TabulationHashing) hashFunction).serializedSize();
+        }
+    }
+
+    private static void writeFunction(ByteBuffer out, HashFamily hashFamily, HashFunction hashFunction)
+    {
+        switch (hashFamily)
+        {
+            case MATRIX:
+                ((UniversalHashing) hashFunction).writeTo(out);
+                break;
+            case MULTIPLY_SHIFT:
+                ((MultiplyShiftHashing) hashFunction).writeTo(out);
+                break;
+            case SEEDED:
+                ((SeededHashing) hashFunction).writeTo(out);
+                break;
+            default:
+                ((TabulationHashing) hashFunction).writeTo(out);
+        }
+    }
+
+
+
+    /* Loading */
+
+    public static MappedPerfectHashSet load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Perfect hash set file is larger than a single 2 GB mapping");
+            }
+
+            // The mapping stays valid once the channel is closed
+            return new MappedPerfectHashSet(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+
+
+    /* Getters */
+
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    public HashFamily getHashFamily()
+    {
+        return this.hashFamily;
+    }
+
+    public int getFileSize()
+    {
+        return this.buffer.capacity();
+    }
+
+    /* Checks the whole file against its trailing checksum. Reads every page of the mapping, so it costs
+       as much as reading the file, which load() leaves to the lookups */
+    public void verify() throws IOException
+    {
+        final int checksumOffset = this.buffer.capacity() - TRAILER_SIZE;
+        if (this.buffer.getLong(checksumOffset) != checksum(this.buffer, checksumOffset))
+        {
+            throw new IOException("Perfect hash set file is corrupted (checksum mismatch)");
+        }
+    }
+
+    /* Sections of the mapped file, which lives outside the heap: the functions, the bucket table and slots,
+       the key bytes, and the file header and trailer along with this object */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        final long keyBytes = this.buffer.capacity() - TRAILER_SIZE - this.keysOffset;
+        final long slotBytes = this.keysOffset - this.bucketTableOffset;
+        final long hashFunctionBytes = this.bucketTableOffset - HEADER_SIZE;
+        final long headerBytes = HEADER_SIZE + TRAILER_SIZE + MemoryFootprint.objectBytes(2 * MemoryFootprint.REFERENCE + 6 * Integer.BYTES);
+        return new MemoryFootprint(keyBytes, slotBytes, hashFunctionBytes, headerBytes);
+    }
+
+
+
+    private int hash(int functionOffset, long fingerprint)
+    {
+        switch (this.hashFamily)
+        {
+            case MATRIX:
+                return UniversalHashing.hash(this.buffer, functionOffset, fingerprint);
+            case MULTIPLY_SHIFT:
+                return MultiplyShiftHashing.hash(this.buffer, functionOffset, fingerprint);
+            case SEEDED:
+                return SeededHashing.hash(this.buffer, functionOffset, fingerprint);
+            default:
+                return TabulationHashing.hash(this.buffer, functionOffset, fingerprint);
+        }
+    }
+
+    @Override
+    public boolean insert(String key)
+    {
+        throw new UnsupportedOperationException("Memory-mapped perfect hash sets are read-only");
+    }
+
+    @Override
+    public boolean delete(String key)
+    {
+        throw new UnsupportedOperationException("Memory-mapped perfect hash sets are read-only");
+    }
+
+    @Override
+    public boolean search(String key)
+    {
+        if (this.size == 0)
+        {
+            return false;
+        }
+
+        final long fingerprint = HashFunction.fingerprint(key);
+        final int bucket = (this.topFunctionOffset < 0) ? 0 : this.hash(this.topFunctionOffset, fingerprint);
+        final int entry = this.bucketTableOffset + bucket * BUCKET_ENTRY_SIZE;
+
+        if (this.buffer.getInt(entry) == 0)
+        {
+            return false;
+        }
+
+        final int index = this.hash(this.buffer.getInt(entry + 2 * Integer.BYTES), fingerprint);
+        final int keyOffset = this.buffer.getInt(this.slotsOffset + (this.buffer.getInt(entry + Integer.BYTES) + index) * Integer.BYTES);
+
+        if (keyOffset == EMPTY_SLOT)
+        {
+            return false;
+        }
+
+        final int keyPosition = this.keysOffset + keyOffset;
+        return Utf8.equals(this.buffer, keyPosition + Integer.BYTES, this.buffer.getInt(keyPosition), key);
+    }
+}
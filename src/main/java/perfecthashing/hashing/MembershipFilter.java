@@ -0,0 +1,13 @@
+package perfecthashing.hashing;
+
+/* Approximate membership test on key fingerprints, put in front of a set so that most absent keys
+   are turned away before either hash level is evaluated. Never answers false for a key that was added;
+   may answer true for one that was not */
+public interface MembershipFilter {
+
+    /* False only if no key with this fingerprint is held */
+    boolean mightContain(long fingerprint);
+
+    /* Estimated heap bytes of the filter, see MemoryFootprint for the assumptions */
+    long memoryFootprint();
+}
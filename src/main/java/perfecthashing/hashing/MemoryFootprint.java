@@ -0,0 +1,127 @@
+package perfecthashing.hashing;
+
+/* Estimated heap bytes held by a hash set, split by what they are spent on.
+   Estimates assume a 64-bit HotSpot JVM with compressed references and compact strings:
+   12-byte object headers, 16-byte array headers, 4-byte references and 8-byte alignment */
+public final class MemoryFootprint
+{
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    /* A StampedLock with its queue pointers, state and lazily created views */
+    static final int STAMPED_LOCK = 48;
+
+    /* A String object: header, hash, coder, hashIsZero and the reference to its bytes */
+    private static final int STRING_SHALLOW = 24;
+
+    private final long keyBytes;
+    private final long slotBytes;
+    private final long hashFunctionBytes;
+    private final long headerBytes;
+
+
+
+    public MemoryFootprint(long keyBytes, long slotBytes, long hashFunctionBytes, long headerBytes)
+    {
+        this.keyBytes = keyBytes;
+        this.slotBytes = slotBytes;
+        this.hashFunctionBytes = hashFunctionBytes;
+        this.headerBytes = headerBytes;
+    }
+
+
+
+    /* Getters */
+
+    /* The key Strings and their byte arrays */
+    public long getKeyBytes()
+    {
+        return this.keyBytes;
+    }
+
+    /* Slot, offset and other per-entry arrays, headers included */
+    public long getSlotBytes()
+    {
+        return this.slotBytes;
+    }
+
+    /* State of the hash functions drawn, such as matrices and tabulation tables */
+    public long getHashFunctionBytes()
+    {
+        return this.hashFunctionBytes;
+    }
+
+    /* The set objects themselves along with their locks and sources of randomness */
+    public long getHeaderBytes()
+    {
+        return this.headerBytes;
+    }
+
+    public long getTotalBytes()
+    {
+        return this.keyBytes + this.slotBytes + this.hashFunctionBytes + this.headerBytes;
+    }
+
+    /* NaN for an empty set */
+    public double getBytesPerKey(int keys)
+    {
+        return (keys == 0) ? Double.NaN : (double) this.getTotalBytes() / keys;
+    }
+
+    public MemoryFootprint plus(MemoryFootprint other)
+    {
+        return new MemoryFootprint(this.keyBytes + other.keyBytes, this.slotBytes + other.slotBytes,
+                                   this.hashFunctionBytes + other.hashFunctionBytes, this.headerBytes + other.headerBytes);
+    }
+
+    /* Adds the header bytes of a wrapper around the set */
+    MemoryFootprint plusHeader(long bytes)
+    {
+        return new MemoryFootprint(this.keyBytes, this.slotBytes, this.hashFunctionBytes, this.headerBytes + bytes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "keys=" + this.keyBytes + " slots=" + this.slotBytes + " hashFunctions=" + this.hashFunctionBytes
+                + " headers=" + this.headerBytes + " total=" + this.getTotalBytes();
+    }
+
+
+
+    /* Estimation helpers */
+
+    static long align(long bytes)
+    {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /* An object whose fields take fieldBytes */
+    static long objectBytes(long fieldBytes)
+    {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    static long arrayBytes(long length, int elementBytes)
+    {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    /* A String with its byte array, Latin-1 strings taking a byte per char and the others two */
+    static long stringBytes(String key)
+    {
+        int bytesPerChar = 1;
+        for(int i = 0 ; i < key.length() ; ++i)
+        {
+            if(key.charAt(i) > 0xFF)
+            {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+
+        return STRING_SHALLOW + arrayBytes(key.length(), bytesPerChar);
+    }
+}
@@ -0,0 +1,82 @@
+package perfecthashing.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/* Dietzfelbinger's multiply-shift scheme: h(x) = (a * x mod 2^64) >> (64 - l) for a random odd a.
+   It maps into 2^l slots, so tables using it are sized with tableSize() */
+public class MultiplyShiftHashing implements HashFunction {
+
+    private final long multiplier;
+    private final int shift;
+    private final int capacity;
+
+    public MultiplyShiftHashing(int capacity)
+    {
+        this(capacity, new Random());
+    }
+
+    public MultiplyShiftHashing(int capacity, Random random)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Multiply-shift hashing needs a power-of-two capacity, got " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+        this.multiplier = random.nextLong() | 1L;
+    }
+
+    /* Rounds a capacity up to the next power of two */
+    public static int tableSize(int capacity)
+    {
+        return (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    @Override
+    public int hash(long fingerprint)
+    {
+        // A single slot table would need a shift by 64, which Java reduces to a shift by 0
+        if (this.capacity == 1)
+        {
+            return 0;
+        }
+
+        return (int) ((this.multiplier * fingerprint) >>> this.shift);
+    }
+
+
+
+    @Override
+    public long memoryFootprint()
+    {
+        return MemoryFootprint.objectBytes(Long.BYTES + 2 * Integer.BYTES);
+    }
+
+
+
+    /* Serialized layout used by MappedPerfectHashSet: capacity, shift (ints), multiplier (long) */
+
+    int serializedSize()
+    {
+        return 2 * Integer.BYTES + Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer)
+    {
+        buffer.putInt(this.capacity).putInt(this.shift).putLong(this.multiplier);
+    }
+
+    /* Evaluates a serialized function in place, without copying it out of the buffer */
+    static int hash(ByteBuffer buffer, int offset, long fingerprint)
+    {
+        if (buffer.getInt(offset) == 1)
+        {
+            return 0;
+        }
+
+        final int shift = buffer.getInt(offset + Integer.BYTES);
+        return (int) ((buffer.getLong(offset + 2 * Integer.BYTES) * fingerprint) >>> shift);
+    }
+}
@@ -0,0 +1,224 @@
+package perfecthashing.hashing;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/* Thread-safe view of a perfect hash set for read-heavy use.
+   Writers take the exclusive lock of a StampedLock, so a rehash or resize is never seen half-done.
+   Readers run optimistically without acquiring the lock and only keep the result if no writer ran
+   in the meantime; a reader that raced a writer retries once under the shared read lock */
+public class OptimisticPerfectHashSet implements IPerfectHashSet {
+
+    private final IPerfectHashSet hashSet;
+    private final StampedLock lock;
+
+
+
+    public OptimisticPerfectHashSet(IPerfectHashSet hashSet)
+    {
+        this.hashSet = hashSet;
+        this.lock = new StampedLock();
+    }
+
+
+
+    /* Getters */
+
+    /* The wrapped set, which must not be used directly while other threads go through this view */
+    public IPerfectHashSet getHashSet()
+    {
+        return this.hashSet;
+    }
+
+
+
+    /* The wrapped set plus this view and its lock */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        final long stamp = this.lock.readLock();
+        try
+        {
+            return this.hashSet.memoryFootprint().plusHeader(MemoryFootprint.objectBytes(2 * MemoryFootprint.REFERENCE) + MemoryFootprint.STAMPED_LOCK);
+        }
+        finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int getSize()
+    {
+        final long stamp = this.lock.readLock();
+        try
+        {
+            return this.hashSet.getSize();
+        }
+        finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /* Lists the keys under the read lock, as the action may run too long to validate an optimistic stamp */
+    @Override
+    public void forEachKey(Consumer<String> action)
+    {
+        final long stamp = this.lock.readLock();
+        try
+        {
+            this.hashSet.forEachKey(action);
+        }
+        finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void reserve(int expectedKeys)
+    {
+        final long stamp = this.lock.writeLock();
+        try
+        {
+            this.hashSet.reserve(expectedKeys);
+        }
+        finally
+        {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean insert(String key)
+    {
+        final long stamp = this.lock.writeLock();
+        try
+        {
+            return this.hashSet.insert(key);
+        }
+        finally
+        {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean delete(String key)
+    {
+        final long stamp = this.lock.writeLock();
+        try
+        {
+            return this.hashSet.delete(key);
+        }
+        finally
+        {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean search(String key)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+
+        // Zero means a writer holds the lock right now
+        if (stamp != 0)
+        {
+            try
+            {
+                final boolean found = this.hashSet.search(key);
+                if (this.lock.validate(stamp))
+                {
+                    return found;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // A racing writer can leave tables and hash functions briefly out of step
+                if (this.lock.validate(stamp))
+                {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try
+        {
+            return this.hashSet.search(key);
+        }
+        finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+
+    /* A whole batch runs under one stamp, so the per-key locking cost is paid once per batch */
+
+    @Override
+    public BitSet insertAll(String[] keys)
+    {
+        final long stamp = this.lock.writeLock();
+        try
+        {
+            return this.hashSet.insertAll(keys);
+        }
+        finally
+        {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public BitSet deleteAll(String[] keys)
+    {
+        final long stamp = this.lock.writeLock();
+        try
+        {
+            return this.hashSet.deleteAll(keys);
+        }
+        finally
+        {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public BitSet searchAll(String[] keys)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+
+        if (stamp != 0)
+        {
+            try
+            {
+                final BitSet found = this.hashSet.searchAll(keys);
+                if (this.lock.validate(stamp))
+                {
+                    return found;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                if (this.lock.validate(stamp))
+                {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try
+        {
+            return this.hashSet.searchAll(keys);
+        }
+        finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+}
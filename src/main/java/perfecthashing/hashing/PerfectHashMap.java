@@ -0,0 +1,79 @@
+package perfecthashing.hashing;
+
+/* AbstractPerfectHashMap with an Object[] of values aligned with the key slots; null values are not stored */
+public class PerfectHashMap<V> extends AbstractPerfectHashMap {
+
+    public PerfectHashMap(BuildOptions options)
+    {
+        super(options);
+    }
+
+    public PerfectHashMap()
+    {
+        this(new BuildOptions());
+    }
+
+
+
+    @Override
+    Object newValues(int length)
+    {
+        return new Object[length];
+    }
+
+    @Override
+    int valueBytes()
+    {
+        return MemoryFootprint.REFERENCE;
+    }
+
+
+
+    /* The value of the key, null when absent */
+    @SuppressWarnings("unchecked")
+    public V get(String key)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketOf(fingerprint);
+        final int slot = slotOf(bucket, key, fingerprint);
+        return (slot < 0) ? null : (V) ((Object[]) bucket.values)[slot];
+    }
+
+    public V getOrDefault(String key, V defaultValue)
+    {
+        final V value = this.get(key);
+        return (value != null) ? value : defaultValue;
+    }
+
+    /* Maps the key to the value; returns true if the key was not in the map */
+    public boolean put(String key, V value)
+    {
+        if(value == null)
+        {
+            throw new IllegalArgumentException("A PerfectHashMap does not store null values");
+        }
+
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketForPut(fingerprint);
+        final int size = this.size();
+
+        final int slot = this.slotForPut(bucket, key, fingerprint);
+        ((Object[]) bucket.values)[slot] = value;
+        return this.size() > size;
+    }
+
+    /* Bulk lookup into an array of at least keys.length values: values[i] is the value of keys[i], null when absent */
+    public V[] getAll(String[] keys, V[] values)
+    {
+        if(values.length < keys.length)
+        {
+            throw new IllegalArgumentException("Room for " + values.length + " values, " + keys.length + " keys");
+        }
+
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            values[i] = this.get(keys[i]);
+        }
+        return values;
+    }
+}
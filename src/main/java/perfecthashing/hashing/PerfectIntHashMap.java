@@ -0,0 +1,73 @@
+package perfecthashing.hashing;
+
+/* AbstractPerfectHashMap with an int[] of values aligned with the key slots, read and written without boxing */
+public class PerfectIntHashMap extends AbstractPerfectHashMap {
+
+    public PerfectIntHashMap(BuildOptions options)
+    {
+        super(options);
+    }
+
+    public PerfectIntHashMap()
+    {
+        this(new BuildOptions());
+    }
+
+
+
+    @Override
+    Object newValues(int length)
+    {
+        return new int[length];
+    }
+
+    @Override
+    int valueBytes()
+    {
+        return Integer.BYTES;
+    }
+
+
+
+    /* The value of the key, defaultValue when absent */
+    public int get(String key, int defaultValue)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketOf(fingerprint);
+        final int slot = slotOf(bucket, key, fingerprint);
+        return (slot < 0) ? defaultValue : ((int[]) bucket.values)[slot];
+    }
+
+    /* Maps the key to the value; returns true if the key was not in the map */
+    public boolean put(String key, int value)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketForPut(fingerprint);
+        final int size = this.size();
+
+        final int slot = this.slotForPut(bucket, key, fingerprint);
+        ((int[]) bucket.values)[slot] = value;
+        return this.size() > size;
+    }
+
+    /* Adds delta to the value of the key, which starts from 0 when absent, and returns the new value */
+    public int addTo(String key, int delta)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketForPut(fingerprint);
+
+        final int slot = this.slotForPut(bucket, key, fingerprint);
+        return ((int[]) bucket.values)[slot] += delta;
+    }
+
+    /* Bulk lookup: values[i] is the value of keys[i], defaultValue when absent */
+    public int[] getAll(String[] keys, int defaultValue)
+    {
+        final int[] values = new int[keys.length];
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            values[i] = this.get(keys[i], defaultValue);
+        }
+        return values;
+    }
+}
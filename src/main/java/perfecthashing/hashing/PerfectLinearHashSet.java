@@ -1,34 +1,91 @@
 package perfecthashing.hashing;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 public class PerfectLinearHashSet implements IPerfectHashSet {
 
     private static final int DEFAULT_CAPACITY = 5;
     private static final int INITIAL_SIZE = 0;
 
+    /* A static build accepts a top-level function once the sum of squared bucket sizes is at most this many times the key count */
+    static final int BUCKET_SQUARES_BOUND = 4;
+
+    /* Number of top-level buckets a parallel build task handles without splitting further */
+    private static final int BUCKETS_PER_TASK = 1024;
+
+    /* The set object (six references, three ints and a long) and its Random with the AtomicLong seed */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(6 * MemoryFootprint.REFERENCE + 3 * Integer.BYTES + Long.BYTES)
+            + MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE) + MemoryFootprint.objectBytes(Long.BYTES);
+
     private PerfectQuadraticHashSet[] hashSet;
     private int capacity;
     private int size;
-    private UniversalHashing hashFunction;
+    private long topLevelRehashingTrials;
+    private final HashFamily hashFamily;
+    private HashFunction hashFunction;
+    private final int parallelism;
+    private final Random random;
+    private RehashListener rehashListener;
+    private RehashListener bucketListener;
 
 
 
-    public PerfectLinearHashSet(final int capacity)
+    public PerfectLinearHashSet(final int capacity, final BuildOptions options)
     {
-        this.capacity = capacity;
+        this.hashFamily = options.getHashFamily();
+        this.parallelism = options.getParallelism();
+        this.random = options.newRandom();
+        this.capacity = this.hashFamily.tableSize(Math.max(capacity, options.getExpectedKeys()));
         this.size = INITIAL_SIZE;
         this.hashSet = new PerfectQuadraticHashSet[this.capacity];
-        this.hashFunction = new UniversalHashing(Integer.SIZE,this.capacity);
+        this.hashFunction = this.hashFamily.create(this.capacity, this.random);
     }
 
-    public PerfectLinearHashSet(final List<String> keys)
+    public PerfectLinearHashSet(final List<String> keys, final BuildOptions options)
     {
-        this(keys.size());
+        this(keys.size(), options);
 
-        for(final String key : keys)
-        {
-            this.insert(key);
-        }
+        // Duplicates would inflate the bucket sizes the top-level function is judged on
+        final String[] distinctKeys = new HashSet<>(keys).toArray(new String[0]);
+        this.build(distinctKeys, distinctKeys.length);
+    }
+
+    public PerfectLinearHashSet(final int capacity, final HashFamily hashFamily)
+    {
+        this(capacity, new BuildOptions().setHashFamily(hashFamily));
+    }
+
+    public PerfectLinearHashSet(final List<String> keys, final HashFamily hashFamily)
+    {
+        this(keys, new BuildOptions().setHashFamily(hashFamily));
+    }
+
+    public PerfectLinearHashSet(final BuildOptions options)
+    {
+        this(DEFAULT_CAPACITY, options);
+    }
+
+    public PerfectLinearHashSet(final HashFamily hashFamily)
+    {
+        this(DEFAULT_CAPACITY, hashFamily);
+    }
+
+    public PerfectLinearHashSet(final int capacity)
+    {
+        this(capacity, HashFamily.MATRIX);
+    }
+
+    public PerfectLinearHashSet(final List<String> keys)
+    {
+        this(keys, HashFamily.MATRIX);
     }
 
 
@@ -67,14 +124,15 @@ public class PerfectLinearHashSet implements IPerfectHashSet {
         return this.capacity;
     }
 
+    /* Walks one snapshot of the table, so that it can be read while a writer resizes it */
     public long getInnerBucketsTotalCapacity()
     {
         long totalCapacity = 0;
-        for(int i = 0 ; i<capacity ; ++i)
+        for(PerfectQuadraticHashSet bucket : this.hashSet)
         {
-            if(this.hashSet[i] == null) continue;
+            if(bucket == null) continue;
 
-            totalCapacity+= this.hashSet[i].getCapacity();
+            totalCapacity+= bucket.getCapacity();
         }
         return totalCapacity;
     }
@@ -84,6 +142,74 @@ public class PerfectLinearHashSet implements IPerfectHashSet {
         return ((double) this.size / this.getInnerBucketsTotalCapacity()  * 1e2);
     }
 
+    public HashFamily getHashFamily()
+    {
+        return this.hashFamily;
+    }
+
+    public int getParallelism()
+    {
+        return this.parallelism;
+    }
+
+    HashFunction getHashFunction()
+    {
+        return this.hashFunction;
+    }
+
+    PerfectQuadraticHashSet[] getBuckets()
+    {
+        return this.hashSet;
+    }
+
+    public long getTopLevelRehashingTrials()
+    {
+        return this.topLevelRehashingTrials;
+    }
+
+    /* The top-level table and function plus every bucket, each with its own slots and function */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        MemoryFootprint footprint = new MemoryFootprint(0, MemoryFootprint.arrayBytes(this.hashSet.length, MemoryFootprint.REFERENCE),
+                                                        this.hashFunction.memoryFootprint(), SHALLOW_BYTES);
+        for(PerfectQuadraticHashSet bucket : this.hashSet)
+        {
+            if(bucket == null) continue;
+
+            footprint = footprint.plus(bucket.memoryFootprint());
+        }
+        return footprint;
+    }
+
+    /* A read-only copy of the current keys in the flat FrozenPerfectHashSet layout; this set is left as it is */
+    public FrozenPerfectHashSet freeze()
+    {
+        return new FrozenPerfectHashSet(this);
+    }
+
+    public FrozenPerfectHashSet freeze(FrozenPerfectHashSet.KeyStorage keyStorage)
+    {
+        return new FrozenPerfectHashSet(this, keyStorage);
+    }
+
+    /* Setters */
+
+    /* Reports top-level resizes and redraws and the rehashes of every bucket to the listener; null turns reporting off.
+       The growth of a bucket is reported as its rehash, not as a resize */
+    public void setRehashListener(final RehashListener rehashListener)
+    {
+        this.rehashListener = rehashListener;
+        this.bucketListener = (rehashListener != null) ? rehashListener::onRehash : null;
+
+        for(PerfectQuadraticHashSet bucket : this.hashSet)
+        {
+            if(bucket == null) continue;
+
+            bucket.setRehashListener(this.bucketListener);
+        }
+    }
+
     public long getTotalRehashingTrials()
     {
         long totalRehashingTrials = 0;
@@ -101,59 +227,435 @@ public class PerfectLinearHashSet implements IPerfectHashSet {
 
 
 
-    private void rehash()
+    /* Static FKS build of the whole table from the first count distinct keys.
+       First pass: hashes every key to its top-level bucket, drawing new top-level functions until
+       the sum of squared bucket sizes is linear in the key count.
+       Second pass: builds every bucket once at its final size from its group of keys, on a ForkJoinPool
+       when the set was configured with a parallelism above 1. Each bucket draws its hash functions from
+       its own seed, so the outcome does not depend on how the buckets are scheduled */
+
+    private void build(final String[] keys, final int count)
     {
-        this.hashFunction = new UniversalHashing(Integer.SIZE, this.capacity);
+        final long[] fingerprints = new long[count];
+        for(int i = 0 ; i < count ; ++i)
+        {
+            fingerprints[i] = HashFunction.fingerprint(keys[i]);
+        }
+
+        final int[] bucketIndices = new int[count];
+        final int[] bucketOffsets = new int[this.capacity + 1];
+        final long startTime = (this.rehashListener != null) ? System.nanoTime() : 0;
+        final long startTrials = this.topLevelRehashingTrials;
+
+        while(!spreads(this.hashFunction, fingerprints, count, bucketIndices, bucketOffsets))
+        {
+            ++this.topLevelRehashingTrials;
+            this.hashFunction = this.hashFamily.create(this.capacity, this.random);
+            Arrays.fill(bucketOffsets, 0);
+        }
+
+        if(this.rehashListener != null && this.topLevelRehashingTrials > startTrials)
+        {
+            this.rehashListener.onTopLevelRehash(this.topLevelRehashingTrials - startTrials, System.nanoTime() - startTime);
+        }
 
-        PerfectQuadraticHashSet[] newHashSet = new PerfectQuadraticHashSet[this.capacity];
+        // Groups the keys by bucket with a counting sort
+        for(int i = 0 ; i < this.capacity ; ++i)
+        {
+            bucketOffsets[i + 1] += bucketOffsets[i];
+        }
 
+        final String[] groupedKeys = new String[count];
+        final long[] groupedFingerprints = new long[count];
+        final int[] nextSlot = Arrays.copyOf(bucketOffsets, this.capacity);
+
+        for(int i = 0 ; i < count ; ++i)
+        {
+            final int slot = nextSlot[bucketIndices[i]]++;
+            groupedKeys[slot] = keys[i];
+            groupedFingerprints[slot] = fingerprints[i];
+        }
+
+        this.hashSet = new PerfectQuadraticHashSet[this.capacity];
+        this.size = INITIAL_SIZE;
+
+        final long seedBase = this.random.nextLong();
+
+        if(this.parallelism > 1 && this.capacity > BUCKETS_PER_TASK)
+        {
+            final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+            try
+            {
+                pool.invoke(new BucketBuildTask(groupedKeys, groupedFingerprints, bucketOffsets, seedBase, 0, this.capacity));
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        else
+        {
+            this.buildBuckets(groupedKeys, groupedFingerprints, bucketOffsets, seedBase, 0, this.capacity);
+        }
 
         for(PerfectQuadraticHashSet bucket : this.hashSet)
         {
             if(bucket == null) continue;
 
-            String[] table = bucket.getHashSet();
+            this.size += bucket.getSize();
+        }
+    }
+
+    /* Builds the buckets [from, to) from their groups of keys */
+
+    private void buildBuckets(final String[] groupedKeys, final long[] groupedFingerprints, final int[] bucketOffsets,
+                              final long seedBase, final int from, final int to)
+    {
+        for(int i = from ; i < to ; ++i)
+        {
+            if(bucketOffsets[i] == bucketOffsets[i + 1]) continue;
+
+            final Random bucketRandom = new Random(HashFunction.mix(seedBase + i));
+            this.hashSet[i] = new PerfectQuadraticHashSet(groupedKeys, groupedFingerprints, bucketOffsets[i], bucketOffsets[i + 1], this.hashFamily, bucketRandom);
+            this.hashSet[i].setRehashListener(this.bucketListener);
+        }
+    }
+
+    /* Top-level pass shared with AbstractPerfectHashMap: hashes the first count fingerprints, writing the bucket
+       of every key to bucketIndices and the size of bucket i to bucketOffsets[i + 1], and returns whether the
+       sum of squared bucket sizes is within BUCKET_SQUARES_BOUND times the key count.
+       bucketOffsets must be all zeros on entry */
+
+    static boolean spreads(final HashFunction hashFunction, final long[] fingerprints, final int count,
+                           final int[] bucketIndices, final int[] bucketOffsets)
+    {
+        long bucketSquares = 0;
+        for(int i = 0 ; i < count ; ++i)
+        {
+            final int index = hashFunction.hash(fingerprints[i]);
+            bucketIndices[i] = index;
+
+            // (n + 1)^2 - n^2 = 2n + 1
+            bucketSquares += 2L * bucketOffsets[index + 1] + 1;
+            ++bucketOffsets[index + 1];
+        }
+
+        return bucketSquares <= (long) BUCKET_SQUARES_BOUND * count;
+    }
+
+    /* Fork-join task splitting a range of buckets until it is small enough to build directly */
+
+    private final class BucketBuildTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] groupedKeys;
+        private final long[] groupedFingerprints;
+        private final int[] bucketOffsets;
+        private final long seedBase;
+        private final int from;
+        private final int to;
+
+        BucketBuildTask(final String[] groupedKeys, final long[] groupedFingerprints, final int[] bucketOffsets,
+                        final long seedBase, final int from, final int to)
+        {
+            this.groupedKeys = groupedKeys;
+            this.groupedFingerprints = groupedFingerprints;
+            this.bucketOffsets = bucketOffsets;
+            this.seedBase = seedBase;
+            this.from = from;
+            this.to = to;
+        }
 
-            for(String key : table)
+        @Override
+        protected void compute()
+        {
+            if(this.to - this.from <= BUCKETS_PER_TASK)
             {
-                if(key == null) continue;
-                final int index = this.hashFunction.hash(key);
+                buildBuckets(this.groupedKeys, this.groupedFingerprints, this.bucketOffsets, this.seedBase, this.from, this.to);
+                return;
+            }
 
-                if(newHashSet[index] == null)
-                {
-                    newHashSet[index] = new PerfectQuadraticHashSet();
-                }
+            final int middle = (this.from + this.to) >>> 1;
+            invokeAll(new BucketBuildTask(this.groupedKeys, this.groupedFingerprints, this.bucketOffsets, this.seedBase, this.from, middle),
+                      new BucketBuildTask(this.groupedKeys, this.groupedFingerprints, this.bucketOffsets, this.seedBase, middle, this.to));
+        }
+    }
+
+    /* Rebuilds the table with a new top-level function, emitting a RehashEvent when Flight Recorder has it enabled */
 
-                newHashSet[index].insert(key);
+    private void rehash()
+    {
+        final RehashEvent event = new RehashEvent();
+        event.begin();
+        final long startTrials = this.topLevelRehashingTrials;
+
+        final String[] keys = new String[this.size];
+        int count = 0;
+
+        for(PerfectQuadraticHashSet bucket : this.hashSet)
+        {
+            if(bucket == null) continue;
+
+            for(String key : bucket.getHashSet())
+            {
+                if(key == null) continue;
+                keys[count++] = key;
             }
         }
 
-        this.hashSet = newHashSet;
+        this.hashFunction = this.hashFamily.create(this.capacity, this.random);
+        this.build(keys, count);
+
+        if(event.shouldCommit())
+        {
+            event.topLevel = true;
+            event.keys = count;
+            event.capacity = this.capacity;
+            event.trials = this.topLevelRehashingTrials - startTrials + 1;
+            event.commit();
+        }
     }
 
     private void resizehashSet()
     {
-        this.capacity = this.size * 2;
+        this.grow(this.hashFamily.tableSize(this.size * 2));
+    }
+
+    /* Rebuilds the whole table with the new number of top-level buckets */
+
+    private void grow(final int newCapacity)
+    {
+        final ResizeEvent event = new ResizeEvent();
+        event.begin();
+        final long startTime = (this.rehashListener != null) ? System.nanoTime() : 0;
+        final int oldCapacity = this.capacity;
+
+        this.capacity = newCapacity;
         this.rehash();
+
+        if(event.shouldCommit())
+        {
+            event.topLevel = true;
+            event.keys = this.size;
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.commit();
+        }
+
+        if(this.rehashListener != null)
+        {
+            this.rehashListener.onResize(oldCapacity, newCapacity, System.nanoTime() - startTime);
+        }
+    }
+
+    private PerfectQuadraticHashSet newBucket()
+    {
+        final PerfectQuadraticHashSet bucket = new PerfectQuadraticHashSet(this.hashFamily);
+        bucket.setRehashListener(this.bucketListener);
+        return bucket;
+    }
+
+    /* Grows the top-level table to expectedKeys buckets at once, rebuilding the current keys a single time,
+       so that inserts up to that count trigger no resize */
+    @Override
+    public void reserve(final int expectedKeys)
+    {
+        if(expectedKeys <= this.capacity) return;
+
+        this.grow(this.hashFamily.tableSize(expectedKeys));
+    }
+
+
+    /* Parallel bulk load. Chunks are fingerprinted on their own threads and their keys grouped by owner,
+       where each of the parallelism owners is given every parallelism-th top-level bucket. Owners then
+       insert their keys chunk by chunk into buckets no other thread touches, so nothing is locked.
+       The table is grown once up front so that no top-level resize can move a key to another owner.
+       Returns {newly added, already present}, the same counts as inserting the keys one by one */
+
+    public int[] insertChunks(final List<String[]> chunks, final int parallelism)
+    {
+        if(parallelism < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        long total = 0;
+        for(String[] chunk : chunks)
+        {
+            total += chunk.length;
+        }
+
+        this.reserve((int) Math.min(Integer.MAX_VALUE, this.size + total));
+
+        final int chunkCount = chunks.size();
+        final long[][] fingerprints = new long[chunkCount][];
+        final int[][] indices = new int[chunkCount][];
+        final int[][] ownerOrder = new int[chunkCount][];
+        final int[][] ownerOffsets = new int[chunkCount][];
+        final int[] newlyAdded = new int[parallelism];
+        final int[] alreadyExisting = new int[parallelism];
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            // Hashing: every chunk gets its fingerprints, bucket indices, and its keys grouped by owner
+            final List<ForkJoinTask<?>> hashing = new ArrayList<>();
+            for(int c = 0 ; c < chunkCount ; ++c)
+            {
+                final int chunk = c;
+                hashing.add(pool.submit(() ->
+                {
+                    final String[] keys = chunks.get(chunk);
+                    final long[] chunkFingerprints = new long[keys.length];
+                    final int[] chunkIndices = new int[keys.length];
+                    final int[] offsets = new int[parallelism + 1];
+
+                    for(int i = 0 ; i < keys.length ; ++i)
+                    {
+                        chunkFingerprints[i] = HashFunction.fingerprint(keys[i]);
+                        chunkIndices[i] = this.hashFunction.hash(chunkFingerprints[i]);
+                        ++offsets[chunkIndices[i] % parallelism + 1];
+                    }
+                    for(int w = 0 ; w < parallelism ; ++w)
+                    {
+                        offsets[w + 1] += offsets[w];
+                    }
+
+                    final int[] order = new int[keys.length];
+                    final int[] nextSlot = Arrays.copyOf(offsets, parallelism);
+                    for(int i = 0 ; i < keys.length ; ++i)
+                    {
+                        order[nextSlot[chunkIndices[i] % parallelism]++] = i;
+                    }
+
+                    fingerprints[chunk] = chunkFingerprints;
+                    indices[chunk] = chunkIndices;
+                    ownerOrder[chunk] = order;
+                    ownerOffsets[chunk] = offsets;
+                }));
+            }
+            joinAll(hashing);
+
+            // Insertion: each owner walks its share of every chunk in file order
+            final List<ForkJoinTask<?>> inserting = new ArrayList<>();
+            for(int w = 0 ; w < parallelism ; ++w)
+            {
+                final int owner = w;
+                inserting.add(pool.submit(() ->
+                {
+                    for(int c = 0 ; c < chunkCount ; ++c)
+                    {
+                        final String[] keys = chunks.get(c);
+                        for(int k = ownerOffsets[c][owner] ; k < ownerOffsets[c][owner + 1] ; ++k)
+                        {
+                            final int i = ownerOrder[c][k];
+                            if(this.bucketAt(indices[c][i], true).insert(keys[i], fingerprints[c][i]))
+                            {
+                                ++newlyAdded[owner];
+                            }
+                            else
+                            {
+                                ++alreadyExisting[owner];
+                            }
+                        }
+                    }
+                }));
+            }
+            joinAll(inserting);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        final int[] counts = new int[2];
+        for(int w = 0 ; w < parallelism ; ++w)
+        {
+            counts[0] += newlyAdded[w];
+            counts[1] += alreadyExisting[w];
+        }
+        this.size += counts[0];
+
+        return counts;
+    }
+
+    private static void joinAll(final List<ForkJoinTask<?>> tasks)
+    {
+        for(ForkJoinTask<?> task : tasks)
+        {
+            task.join();
+        }
+    }
+
+
+    /* Top-level hooks for ConcurrentPerfectLinearHashSet, which keeps the key count itself and guards
+       the buckets with its own locks */
+
+    int indexOf(final long fingerprint)
+    {
+        return this.hashFunction.hash(fingerprint);
+    }
+
+    PerfectQuadraticHashSet bucketAt(final int index, final boolean create)
+    {
+        if(create && this.hashSet[index] == null)
+        {
+            this.hashSet[index] = this.newBucket();
+        }
+
+        return this.hashSet[index];
+    }
+
+    void resize(final int size)
+    {
+        this.size = size;
+        this.resizehashSet();
+    }
+
+    /* Takes over the key count kept by ConcurrentPerfectLinearHashSet */
+    void setSize(final int size)
+    {
+        this.size = size;
+    }
+
+    void reserve(final int size, final int expectedKeys)
+    {
+        this.size = size;
+        this.reserve(expectedKeys);
     }
 
 
+    @Override
+    public void forEachKey(final Consumer<String> action)
+    {
+        for(PerfectQuadraticHashSet bucket : this.hashSet)
+        {
+            if(bucket != null) bucket.forEachKey(action);
+        }
+    }
+
     @Override
     public boolean insert(final String key)
+    {
+        return this.insert(key, HashFunction.fingerprint(key));
+    }
+
+    private boolean insert(final String key, final long fingerprint)
     {
         if (this.size >= this.capacity)
         {
             this.resizehashSet();
         }
 
-        final int index = this.hashFunction.hash(key);
+        final int index = this.hashFunction.hash(fingerprint);
 
         if(this.hashSet[index] == null)
         {
-            this.hashSet[index] = new PerfectQuadraticHashSet();
+            this.hashSet[index] = this.newBucket();
         }
 
-        if(this.hashSet[index].insert(key))
+        if(this.hashSet[index].insert(key, fingerprint))
         {
             ++this.size;
             return true;
@@ -165,14 +667,19 @@ public class PerfectLinearHashSet implements IPerfectHashSet {
     @Override
     public boolean delete(final String key)
     {
-        final int index = this.hashFunction.hash(key);
+        return this.delete(key, HashFunction.fingerprint(key));
+    }
+
+    private boolean delete(final String key, final long fingerprint)
+    {
+        final int index = this.hashFunction.hash(fingerprint);
 
         if(this.hashSet[index] == null)
         {
             return false;
         }
 
-        if (this.hashSet[index].delete(key))
+        if (this.hashSet[index].delete(key, fingerprint))
         {
             --this.size;
             return true;
@@ -184,14 +691,110 @@ public class PerfectLinearHashSet implements IPerfectHashSet {
     @Override
     public boolean search(final String key)
     {
-        final int index = this.hashFunction.hash(key);
+        final long fingerprint = HashFunction.fingerprint(key);
+        final int index = this.hashFunction.hash(fingerprint);
 
         if(this.hashSet[index] == null)
         {
             return false;
         }
 
-        return this.hashSet[index].search(key);
+        return this.hashSet[index].search(key, fingerprint);
+    }
+
+
+
+
+    /* Bulk operations work on blocks of keys. A search runs each block through three passes: fingerprints
+       and top-level hashes, then second-level hashes, then key comparisons. The loads of one pass do not
+       depend on each other, so their cache misses overlap instead of each probe waiting on the previous one.
+       Inserts and deletes only fingerprint ahead, since a resize can move every key of the block */
+
+    @Override
+    public BitSet searchAll(final String[] keys)
+    {
+        final BitSet found = new BitSet(keys.length);
+        final int block = Math.min(keys.length, PerfectQuadraticHashSet.BATCH_BLOCK);
+        final long[] fingerprints = new long[block];
+        final PerfectQuadraticHashSet[] buckets = new PerfectQuadraticHashSet[block];
+        final int[] indices = new int[block];
+
+        for(int from = 0 ; from < keys.length ; from += block)
+        {
+            final int to = Math.min(keys.length, from + block);
+
+            for(int i = from ; i < to ; ++i)
+            {
+                fingerprints[i - from] = HashFunction.fingerprint(keys[i]);
+                buckets[i - from] = this.hashSet[this.hashFunction.hash(fingerprints[i - from])];
+            }
+
+            for(int i = 0 ; i < to - from ; ++i)
+            {
+                if(buckets[i] != null) indices[i] = buckets[i].getIndex(fingerprints[i]);
+            }
+
+            for(int i = from ; i < to ; ++i)
+            {
+                final PerfectQuadraticHashSet bucket = buckets[i - from];
+                if(bucket != null && bucket.holds(indices[i - from], keys[i], fingerprints[i - from])) found.set(i);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public BitSet insertAll(final String[] keys)
+    {
+        final BitSet inserted = new BitSet(keys.length);
+        final long[] fingerprints = this.fingerprintBlock(keys.length);
+
+        for(int from = 0 ; from < keys.length ; from += fingerprints.length)
+        {
+            final int to = Math.min(keys.length, from + fingerprints.length);
+
+            for(int i = from ; i < to ; ++i)
+            {
+                fingerprints[i - from] = HashFunction.fingerprint(keys[i]);
+            }
+
+            for(int i = from ; i < to ; ++i)
+            {
+                if(this.insert(keys[i], fingerprints[i - from])) inserted.set(i);
+            }
+        }
+
+        return inserted;
+    }
+
+    @Override
+    public BitSet deleteAll(final String[] keys)
+    {
+        final BitSet deleted = new BitSet(keys.length);
+        final long[] fingerprints = this.fingerprintBlock(keys.length);
+
+        for(int from = 0 ; from < keys.length ; from += fingerprints.length)
+        {
+            final int to = Math.min(keys.length, from + fingerprints.length);
+
+            for(int i = from ; i < to ; ++i)
+            {
+                fingerprints[i - from] = HashFunction.fingerprint(keys[i]);
+            }
+
+            for(int i = from ; i < to ; ++i)
+            {
+                if(this.delete(keys[i], fingerprints[i - from])) deleted.set(i);
+            }
+        }
+
+        return deleted;
+    }
+
+    private long[] fingerprintBlock(final int keyCount)
+    {
+        return new long[Math.max(1, Math.min(keyCount, PerfectQuadraticHashSet.BATCH_BLOCK))];
     }
 
 
@@ -0,0 +1,73 @@
+package perfecthashing.hashing;
+
+/* AbstractPerfectHashMap with a long[] of values aligned with the key slots, read and written without boxing */
+public class PerfectLongHashMap extends AbstractPerfectHashMap {
+
+    public PerfectLongHashMap(BuildOptions options)
+    {
+        super(options);
+    }
+
+    public PerfectLongHashMap()
+    {
+        this(new BuildOptions());
+    }
+
+
+
+    @Override
+    Object newValues(int length)
+    {
+        return new long[length];
+    }
+
+    @Override
+    int valueBytes()
+    {
+        return Long.BYTES;
+    }
+
+
+
+    /* The value of the key, defaultValue when absent */
+    public long get(String key, long defaultValue)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketOf(fingerprint);
+        final int slot = slotOf(bucket, key, fingerprint);
+        return (slot < 0) ? defaultValue : ((long[]) bucket.values)[slot];
+    }
+
+    /* Maps the key to the value; returns true if the key was not in the map */
+    public boolean put(String key, long value)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketForPut(fingerprint);
+        final int size = this.size();
+
+        final int slot = this.slotForPut(bucket, key, fingerprint);
+        ((long[]) bucket.values)[slot] = value;
+        return this.size() > size;
+    }
+
+    /* Adds delta to the value of the key, which starts from 0 when absent, and returns the new value */
+    public long addTo(String key, long delta)
+    {
+        final long fingerprint = HashFunction.fingerprint(key);
+        final Bucket bucket = this.bucketForPut(fingerprint);
+
+        final int slot = this.slotForPut(bucket, key, fingerprint);
+        return ((long[]) bucket.values)[slot] += delta;
+    }
+
+    /* Bulk lookup: values[i] is the value of keys[i], defaultValue when absent */
+    public long[] getAll(String[] keys, long defaultValue)
+    {
+        final long[] values = new long[keys.length];
+        for(int i = 0 ; i < keys.length ; ++i)
+        {
+            values[i] = this.get(keys[i], defaultValue);
+        }
+        return values;
+    }
+}
@@ -1,6 +1,10 @@
 package perfecthashing.hashing;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
 
 public class PerfectQuadraticHashSet implements IPerfectHashSet {
 
@@ -8,33 +12,101 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
     private static final int DEFAULT_CAPACITY = 16;
     private static final int INITIAL_SIZE = 0;
 
+    /* Largest table reserve() agrees to allocate up front */
+    private static final long MAX_RESERVED_CAPACITY = 1L << 30;
+
+    /* The set object: five references, three ints and two longs */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(5 * MemoryFootprint.REFERENCE + 3 * Integer.BYTES + 2 * Long.BYTES);
+
+    /* Number of keys a bulk search hashes before it starts probing */
+    static final int BATCH_BLOCK = 64;
+
     private String[] hashSet;
+    /* 16 bits of the fingerprint of the key in each slot, compared before the key itself so that most
+       misses are rejected without loading the String. An empty slot holds 0, which the null check settles */
+    private short[] tags;
     private int size;
     private int capacity;
     private int collisions;
     private long rehashingTrials;
-    private UniversalHashing hashFunction;
+    private final HashFamily hashFamily;
+    private HashFunction hashFunction;
+    /* Seed of the current function of a SEEDED table, which keeps no HashFunction object */
+    private long seed;
+    private RehashListener rehashListener;
 
 
 
     /* Constructors */
 
-     public PerfectQuadraticHashSet(int capacity)
+    public PerfectQuadraticHashSet(int capacity, HashFamily hashFamily)
+    {
+        this(capacity, hashFamily, new Random());
+    }
+
+    private PerfectQuadraticHashSet(int capacity, HashFamily hashFamily, Random random)
     {
-        this.capacity = capacity * capacity;
+        this.hashFamily = hashFamily;
+        this.capacity = hashFamily.tableSize(capacity * capacity);
         this.size = INITIAL_SIZE;
         this.hashSet = new String[this.capacity];
-        this.hashFunction = new UniversalHashing(Integer.SIZE, this.capacity);
+        this.tags = new short[this.capacity];
+
+        if(hashFamily == HashFamily.SEEDED)
+        {
+            this.seed = random.nextLong();
+        }
+        else
+        {
+            this.hashFunction = hashFamily.create(this.capacity, random);
+        }
     }
 
-    public PerfectQuadraticHashSet(List<String> keys)
+    public PerfectQuadraticHashSet(List<String> keys, BuildOptions options)
+    {
+        this(keys.toArray(new String[0]), options.getHashFamily(), options.newRandom());
+    }
+
+    private PerfectQuadraticHashSet(String[] keys, HashFamily hashFamily, Random random)
     {
-        this(keys.size());
+        this(keys.length, hashFamily, random);
 
-        for(String key : keys)
+        final long[] fingerprints = new long[keys.length];
+        for(int i = 0 ; i < keys.length ; ++i)
         {
-            this.insert(key);
+            fingerprints[i] = HashFunction.fingerprint(keys[i]);
         }
+
+        this.build(keys, fingerprints, 0, keys.length, random);
+    }
+
+    public PerfectQuadraticHashSet(List<String> keys, HashFamily hashFamily)
+    {
+        this(keys, new BuildOptions().setHashFamily(hashFamily));
+    }
+
+    /* Builds a bucket of PerfectLinearHashSet holding keys[from, to) directly at its final size,
+       drawing all of its hash functions from the given source of randomness */
+
+    PerfectQuadraticHashSet(String[] keys, long[] fingerprints, int from, int to, HashFamily hashFamily, Random random)
+    {
+        this(to - from, hashFamily, random);
+        this.build(keys, fingerprints, from, to, random);
+    }
+
+    public PerfectQuadraticHashSet(HashFamily hashFamily)
+    {
+        this(DEFAULT_CAPACITY, hashFamily);
+    }
+
+    public PerfectQuadraticHashSet(int capacity)
+    {
+        this(capacity, HashFamily.MATRIX);
+    }
+
+    public PerfectQuadraticHashSet(List<String> keys)
+    {
+        this(keys, HashFamily.MATRIX);
     }
 
     /* Default Constructor */
@@ -77,13 +149,106 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
         return this.rehashingTrials;
     }
 
+    public HashFamily getHashFamily()
+    {
+        return this.hashFamily;
+    }
+
+    /* A SEEDED table gets an object built from its seed */
+    HashFunction getHashFunction()
+    {
+        return (this.hashFunction != null) ? this.hashFunction : new SeededHashing(this.capacity, this.seed);
+    }
+
+
+    /* Slot and tag arrays, key Strings, hash function and the set object */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        long keyBytes = 0;
+        for(String key : this.hashSet)
+        {
+            if(key == null) continue;
+
+            keyBytes += MemoryFootprint.stringBytes(key);
+        }
+
+        final long slotBytes = MemoryFootprint.arrayBytes(this.hashSet.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.arrayBytes(this.tags.length, Short.BYTES);
+        return new MemoryFootprint(keyBytes, slotBytes,
+                                   (this.hashFunction != null) ? this.hashFunction.memoryFootprint() : 0, SHALLOW_BYTES);
+    }
+
+
+    /* Setters */
+
+    /* Reports every rehash of this table to the listener, and every resize too; null turns reporting off */
+    public void setRehashListener(RehashListener rehashListener)
+    {
+        this.rehashListener = rehashListener;
+    }
+
+
+
+    /* Static build sub-routine: places keys[from, to) into the empty table in one pass per trial,
+       drawing a new hash function until the placement is collision-free. Duplicates are kept once.
+       The trials share one table, cleared after a collision */
+
+    private void build(String[] keys, long[] fingerprints, int from, int to, Random random)
+    {
+        final String[] table = new String[this.capacity];
+        final short[] tags = new short[this.capacity];
+        while(true)
+        {
+            int placed = 0;
+            boolean success = true;
+
+            for(int i = from ; i < to ; ++i)
+            {
+                final int index = this.index(fingerprints[i]);
+
+                if(table[index] == null)
+                {
+                    table[index] = keys[i];
+                    tags[index] = tag(fingerprints[i]);
+                    ++placed;
+                }
+                else if(!table[index].equals(keys[i]))
+                {
+                    success = false;
+                    break;
+                }
+            }
+
+            if(success)
+            {
+                this.hashSet = table;
+                this.tags = tags;
+                this.size = placed;
+                return;
+            }
+
+            Arrays.fill(table, null);
+            Arrays.fill(tags, (short) 0);
+            ++this.rehashingTrials;
+            if(this.hashFunction == null)
+            {
+                this.seed = SeededHashing.nextSeed(this.seed);
+            }
+            else
+            {
+                this.hashFunction = this.hashFamily.create(this.capacity, random);
+            }
+        }
+    }
 
 
     /* Reinsertion sub-routine in rehashing */
 
-    private boolean reinsert(String key , String[] newHashSet)
+    private boolean reinsert(String key , String[] newHashSet, short[] newTags)
     {
-        final int index = this.hashFunction.hash(key);
+        final long fingerprint = HashFunction.fingerprint(key);
+        final int index = this.index(fingerprint);
 
         if (newHashSet[index] != null)
         {
@@ -91,24 +256,38 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
         }
 
         newHashSet[index] = key;
+        newTags[index] = tag(fingerprint);
         return true;
     }
 
 
     /* Rehashes the hash table when a collision occurs.
-       This is resets the hash set to a new hash set and reinserts the keys */
+       This is resets the hash set to a new hash set and reinserts the keys.
+       The trials share one new table, cleared after a collision.
+       Emits a RehashEvent when Flight Recorder has it enabled */
 
     private void rehash(String collisionKey)
     {
-        boolean success = false;
-        String[] newHashSet = new String[this.capacity];
-        do
+        final RehashEvent event = new RehashEvent();
+        event.begin();
+        final long startTime = (this.rehashListener != null) ? System.nanoTime() : 0;
+        final long startTrials = this.rehashingTrials;
+        final String[] newHashSet = new String[this.capacity];
+        final short[] newTags = new short[this.capacity];
+        while(true)
         {
             ++this.rehashingTrials;
-            success = true;
-            this.hashFunction = new UniversalHashing(Integer.SIZE, this.capacity);
+            boolean success = true;
 
-            newHashSet = new String[this.capacity];
+            // A SEEDED table steps its seed instead of allocating a function and a Random per trial
+            if(this.hashFunction == null)
+            {
+                this.seed = SeededHashing.nextSeed(this.seed);
+            }
+            else
+            {
+                this.hashFunction = this.hashFamily.create(this.capacity);
+            }
 
             for (String key : this.hashSet)
             {
@@ -117,22 +296,39 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
                     continue;
                 }
 
-                if(!this.reinsert(key , newHashSet))
+                if(!this.reinsert(key , newHashSet, newTags))
                 {
                     success = false;
                     break;
                 }
             }
 
-            if(collisionKey != null)
+            if(success && collisionKey != null)
             {
-                success &= this.reinsert(collisionKey , newHashSet);
+                success = this.reinsert(collisionKey , newHashSet, newTags);
             }
 
+            if(success) break;
+
+            Arrays.fill(newHashSet, null);
+            Arrays.fill(newTags, (short) 0);
         }
-        while (!success);
 
         this.hashSet = newHashSet;
+        this.tags = newTags;
+
+        if(event.shouldCommit())
+        {
+            event.keys = this.size + ((collisionKey != null) ? 1 : 0);
+            event.capacity = this.capacity;
+            event.trials = this.rehashingTrials - startTrials;
+            event.commit();
+        }
+
+        if(this.rehashListener != null)
+        {
+            this.rehashListener.onRehash(this.rehashingTrials - startTrials, System.nanoTime() - startTime);
+        }
     }
 
 
@@ -142,14 +338,84 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
 
     private void resizehashSet()
     {
-        this.capacity = this.size * this.size * 4;
+        this.grow(this.hashFamily.tableSize(this.size * this.size * 4));
+    }
+
+    /* Rehashes into a table of the new capacity; the resize reported covers the rehash it causes */
+
+    private void grow(int newCapacity)
+    {
+        final ResizeEvent event = new ResizeEvent();
+        event.begin();
+        final long startTime = (this.rehashListener != null) ? System.nanoTime() : 0;
+        final int oldCapacity = this.capacity;
+
+        this.capacity = newCapacity;
         this.rehash(null);
+
+        if(event.shouldCommit())
+        {
+            event.keys = this.size;
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.commit();
+        }
+
+        if(this.rehashListener != null)
+        {
+            this.rehashListener.onResize(oldCapacity, newCapacity, System.nanoTime() - startTime);
+        }
     }
 
 
 
+    /* Grows the table to expectedKeys^2 slots at once, so that inserts up to that count trigger no resize */
+    @Override
+    public void reserve(int expectedKeys)
+    {
+        final long capacity = (long) expectedKeys * expectedKeys;
+        if(capacity <= this.capacity) return;
+
+        if(capacity > MAX_RESERVED_CAPACITY)
+        {
+            throw new IllegalArgumentException("A quadratic table for " + expectedKeys + " keys would need " + capacity + " slots");
+        }
+
+        this.grow(this.hashFamily.tableSize((int) capacity));
+    }
+
+    @Override
+    public void forEachKey(Consumer<String> action)
+    {
+        for(String key : this.hashSet)
+        {
+            if(key != null) action.accept(key);
+        }
+    }
+
     @Override
     public boolean insert(String key)
+    {
+        return this.insert(key, HashFunction.fingerprint(key));
+    }
+
+    @Override
+    public boolean delete(String key)
+    {
+        return this.delete(key, HashFunction.fingerprint(key));
+    }
+
+    @Override
+    public boolean search(String key)
+    {
+        return this.search(key, HashFunction.fingerprint(key));
+    }
+
+
+
+    /* Fingerprint variants used by PerfectLinearHashSet so that a key is only reduced once across both levels */
+
+    boolean insert(String key, long fingerprint)
     {
 
         // Resizes the hash table on capacity < size^2
@@ -158,10 +424,11 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
             this.resizehashSet();
         }
 
-        int index = this.hashFunction.hash(key);
+        int index = this.index(fingerprint);
+        final short tag = tag(fingerprint);
 
         // Returns false on existing dictionary entry
-        if (this.hashSet[index] != null && this.hashSet[index].equals(key))
+        if (this.holds(index, key, tag))
         {
             return false;
         }
@@ -171,6 +438,7 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
         {
 
             this.hashSet[index] = key;
+            this.tags[index] = tag;
         }
         else
         {
@@ -182,14 +450,14 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
         return true;
     }
 
-    @Override
-    public boolean delete(String key)
+    boolean delete(String key, long fingerprint)
     {
-        int index = this.hashFunction.hash(key);
+        int index = this.index(fingerprint);
 
-        if (this.hashSet[index] != null && this.hashSet[index].equals(key))
+        if (this.holds(index, key, tag(fingerprint)))
         {
             this.hashSet[index] = null;
+            this.tags[index] = 0;
             --this.size;
             return true;
         }
@@ -197,15 +465,70 @@ public class PerfectQuadraticHashSet implements IPerfectHashSet {
         return false;
     }
 
-    @Override
-    public boolean search(String key)
+    boolean search(String key, long fingerprint)
     {
-        int index = this.hashFunction.hash(key);
-        return (this.hashSet[index] != null && this.hashSet[index].equals(key));
+        return this.holds(this.index(fingerprint), key, tag(fingerprint));
     }
 
     public int getIndex(String key)
     {
-        return this.hashFunction.hash(key);
+        return this.index(HashFunction.fingerprint(key));
+    }
+
+    int getIndex(long fingerprint)
+    {
+        return this.index(fingerprint);
+    }
+
+    private int index(long fingerprint)
+    {
+        return (this.hashFunction != null) ? this.hashFunction.hash(fingerprint) : SeededHashing.hash(this.seed, this.capacity, fingerprint);
+    }
+
+    boolean holds(int index, String key, long fingerprint)
+    {
+        return this.holds(index, key, tag(fingerprint));
+    }
+
+    private boolean holds(int index, String key, short tag)
+    {
+        return (this.tags[index] == tag && this.hashSet[index] != null && this.hashSet[index].equals(key));
+    }
+
+    /* Top 16 bits of the mixed fingerprint, so that the tag does not follow the bits the slot index came from */
+    static short tag(long fingerprint)
+    {
+        return (short) (HashFunction.mix(fingerprint) >>> 48);
+    }
+
+
+
+    /* Hashes a block of keys before probing any of them, so the table loads of the block are independent
+       of each other and can be in flight together instead of each one waiting on the previous comparison */
+
+    @Override
+    public BitSet searchAll(String[] keys)
+    {
+        final BitSet found = new BitSet(keys.length);
+        final int[] indices = new int[Math.min(keys.length, BATCH_BLOCK)];
+        final long[] fingerprints = new long[indices.length];
+
+        for(int from = 0 ; from < keys.length ; from += BATCH_BLOCK)
+        {
+            final int to = Math.min(keys.length, from + BATCH_BLOCK);
+
+            for(int i = from ; i < to ; ++i)
+            {
+                fingerprints[i - from] = HashFunction.fingerprint(keys[i]);
+                indices[i - from] = this.index(fingerprints[i - from]);
+            }
+
+            for(int i = from ; i < to ; ++i)
+            {
+                if(this.holds(indices[i - from], keys[i], fingerprints[i - from])) found.set(i);
+            }
+        }
+
+        return found;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package perfecthashing.hashing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/* Flight Recorder event for one rehash: a second-level table drawing hash functions until its keys fit,
+   or the top-level table drawing them until its buckets are small enough. Off unless a recording
+   enables perfecthashing.Rehash, in which case its duration is the time the rehash took */
+@Name("perfecthashing.Rehash")
+@Label("Rehash")
+@Category("Perfect Hashing")
+@Description("A hash table drew new hash functions and rebuilt itself")
+@Enabled(false)
+class RehashEvent extends Event
+{
+    @Label("Top Level")
+    @Description("Whether the top-level table of a linear set was rebuilt, rather than a quadratic table")
+    boolean topLevel;
+
+    @Label("Keys")
+    int keys;
+
+    @Label("Capacity")
+    int capacity;
+
+    @Label("Trials")
+    @Description("Hash functions drawn, the one that fit included")
+    long trials;
+}
@@ -0,0 +1,22 @@
+package perfecthashing.hashing;
+
+/* Receives the rebuilds of a hash set as they happen, so that a long-lived set can be watched degrading.
+   Sets with concurrent writers call it from several threads at once */
+@FunctionalInterface
+public interface RehashListener {
+
+    /* A second-level table drew trials new hash functions, in nanos nanoseconds, before its keys fit again */
+    void onRehash(long trials, long nanos);
+
+    /* The top-level table of a linear set rejected trials hash functions for their skewed buckets, in nanos
+       nanoseconds, before drawing one it kept. Counted as a rehash unless overridden */
+    default void onTopLevelRehash(long trials, long nanos)
+    {
+        this.onRehash(trials, nanos);
+    }
+
+    /* The top-level table grew from oldCapacity to newCapacity and was rebuilt, in nanos nanoseconds */
+    default void onResize(int oldCapacity, int newCapacity, long nanos)
+    {
+    }
+}
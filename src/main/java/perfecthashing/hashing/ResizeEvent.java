@@ -0,0 +1,31 @@
+package perfecthashing.hashing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/* Flight Recorder event for a table growing, the rehash it causes included. Off unless a recording
+   enables perfecthashing.Resize */
+@Name("perfecthashing.Resize")
+@Label("Resize")
+@Category("Perfect Hashing")
+@Description("A hash table grew and was rebuilt at its new capacity")
+@Enabled(false)
+class ResizeEvent extends Event
+{
+    @Label("Top Level")
+    @Description("Whether the top-level table of a linear set grew, rather than a quadratic table")
+    boolean topLevel;
+
+    @Label("Keys")
+    int keys;
+
+    @Label("Old Capacity")
+    int oldCapacity;
+
+    @Label("New Capacity")
+    int newCapacity;
+}
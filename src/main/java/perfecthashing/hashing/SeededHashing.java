@@ -0,0 +1,78 @@
+package perfecthashing.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/* Hash function derived from a single 64-bit seed: the fingerprint is xor-ed with the seed, run through
+   the SplitMix64 finalizer and scaled into [0, capacity) with a multiply-high. It is not universal in the
+   strict sense, but the finalizer spreads every fingerprint bit over the whole word.
+   The static helpers let a table keep only the seed and draw a new function by stepping it,
+   so that a rehash trial allocates nothing */
+public class SeededHashing implements HashFunction {
+
+    /* Golden-ratio increment between successive seeds, the SplitMix64 gamma */
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final int capacity;
+
+    public SeededHashing(int capacity, long seed)
+    {
+        this.capacity = capacity;
+        this.seed = seed;
+    }
+
+    public SeededHashing(int capacity, Random random)
+    {
+        this(capacity, random.nextLong());
+    }
+
+    public long getSeed()
+    {
+        return this.seed;
+    }
+
+    @Override
+    public int hash(long fingerprint)
+    {
+        return hash(this.seed, this.capacity, fingerprint);
+    }
+
+    @Override
+    public long memoryFootprint()
+    {
+        return MemoryFootprint.objectBytes(Long.BYTES + Integer.BYTES);
+    }
+
+    /* The function of the given seed, evaluated without an instance */
+    static int hash(long seed, int capacity, long fingerprint)
+    {
+        return (int) (((HashFunction.mix(fingerprint ^ seed) >>> Integer.SIZE) * capacity) >>> Integer.SIZE);
+    }
+
+    /* The seed of the next function to try after the one of the given seed */
+    static long nextSeed(long seed)
+    {
+        return seed + SEED_STEP;
+    }
+
+
+
+    /* Serialized layout used by MappedPerfectHashSet: capacity (int), seed (long) */
+
+    int serializedSize()
+    {
+        return Integer.BYTES + Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer)
+    {
+        buffer.putInt(this.capacity).putLong(this.seed);
+    }
+
+    /* Evaluates a serialized function in place, without copying it out of the buffer */
+    static int hash(ByteBuffer buffer, int offset, long fingerprint)
+    {
+        return hash(buffer.getLong(offset + Integer.BYTES), buffer.getInt(offset), fingerprint);
+    }
+}
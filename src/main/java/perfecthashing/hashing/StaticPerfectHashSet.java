@@ -0,0 +1,370 @@
+package perfecthashing.hashing;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/* Immutable minimal perfect hash set in the compress-hash-displace / PTHash style.
+   Keys are split into small buckets; buckets are placed largest first, each one searching for a
+   16-bit pilot that sends all of its keys to free slots of a table slightly larger than the key count.
+   Slots past the key count are remapped onto the holes below it, so every key gets a distinct index
+   in [0, size). The function itself costs a few bits per key; the optional verification data decides
+   how a key outside the set is told apart */
+public class StaticPerfectHashSet implements IPerfectHashSet {
+
+    /* What is stored next to the minimal perfect hash to answer membership queries */
+    public enum Verification
+    {
+        /* The keys themselves: exact answers */
+        KEYS,
+
+        /* A 32-bit fingerprint per key: a foreign key is accepted with probability 2^-32 */
+        FINGERPRINTS,
+
+        /* Nothing: every key is reported present, only meaningful for keys known to be members */
+        NONE
+    }
+
+    private static final int AVERAGE_BUCKET_SIZE = 5;
+    private static final double LOAD_FACTOR = 0.99;
+    private static final int MAX_PILOT = (1 << Short.SIZE) - 1;
+
+    /* PTHash skew: 60% of the keys go to the first 30% of the buckets. The dense buckets are placed while
+       the table is still empty, leaving mostly single keys for the last, nearly full stretch */
+    private static final long HASH_RANGE = 1L << Integer.SIZE;
+    private static final long DENSE_KEYS = HASH_RANGE * 6 / 10;
+    private static final double DENSE_BUCKET_SHARE = 0.3;
+
+    /* The set object: five references, four ints and a long */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(5 * MemoryFootprint.REFERENCE + 4 * Integer.BYTES + Long.BYTES);
+
+    private final Verification verification;
+    private final int size;
+    private final int numBuckets;
+    private final int denseBuckets;
+    private final int tableSize;
+    private long seed;
+    private int buildAttempts;
+
+    private short[] pilots;
+    private int[] remap;
+    private String[] keys;
+    private int[] fingerprints;
+
+
+
+    /* Constructors */
+
+    public StaticPerfectHashSet(List<String> keys, Verification verification, BuildOptions options)
+    {
+        final String[] distinctKeys = new HashSet<>(keys).toArray(new String[0]);
+
+        this.verification = verification;
+        this.size = distinctKeys.length;
+        this.numBuckets = Math.max(1, (this.size + AVERAGE_BUCKET_SIZE - 1) / AVERAGE_BUCKET_SIZE);
+        this.denseBuckets = (int) (this.numBuckets * DENSE_BUCKET_SHARE);
+        this.tableSize = Math.max(this.size, (int) Math.ceil(this.size / LOAD_FACTOR));
+
+        final long[] keyFingerprints = new long[this.size];
+        for(int i = 0 ; i < this.size ; ++i)
+        {
+            keyFingerprints[i] = HashFunction.fingerprint(distinctKeys[i]);
+        }
+
+        final Random random = options.newRandom();
+        do
+        {
+            ++this.buildAttempts;
+            this.seed = random.nextLong();
+        }
+        while(!this.build(keyFingerprints));
+
+        this.storeVerification(distinctKeys, keyFingerprints);
+    }
+
+    public StaticPerfectHashSet(List<String> keys, Verification verification)
+    {
+        this(keys, verification, new BuildOptions());
+    }
+
+    public StaticPerfectHashSet(List<String> keys)
+    {
+        this(keys, Verification.KEYS);
+    }
+
+
+
+    /* Getters */
+
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    public Verification getVerification()
+    {
+        return this.verification;
+    }
+
+    public int getBuildAttempts()
+    {
+        return this.buildAttempts;
+    }
+
+    /* Bits per key taken by the hash function alone (pilots and remap table), without verification data */
+    public double getBitsPerKey()
+    {
+        if(this.size == 0) return 0;
+
+        return ((double) this.pilots.length * Short.SIZE + (double) this.remap.length * Integer.SIZE) / this.size;
+    }
+
+
+
+    /* Pilots and remap table as the hash function, verification keys or fingerprints as the slots */
+    @Override
+    public MemoryFootprint memoryFootprint()
+    {
+        long keyBytes = 0;
+        long slotBytes = 0;
+        if(this.keys != null)
+        {
+            slotBytes += MemoryFootprint.arrayBytes(this.keys.length, MemoryFootprint.REFERENCE);
+            for(String key : this.keys)
+            {
+                if(key == null) continue;
+
+                keyBytes += MemoryFootprint.stringBytes(key);
+            }
+        }
+        if(this.fingerprints != null)
+        {
+            slotBytes += MemoryFootprint.arrayBytes(this.fingerprints.length, Integer.BYTES);
+        }
+
+        final long hashFunctionBytes = MemoryFootprint.arrayBytes(this.pilots.length, Short.BYTES)
+                + MemoryFootprint.arrayBytes(this.remap.length, Integer.BYTES);
+        return new MemoryFootprint(keyBytes, slotBytes, hashFunctionBytes, SHALLOW_BYTES);
+    }
+
+
+
+    /* Hashing sub-routines shared by the build and the lookups */
+
+    private long hashedKey(long fingerprint)
+    {
+        return HashFunction.mix(fingerprint + this.seed);
+    }
+
+    private int bucketOf(long hashedKey)
+    {
+        final long h = hashedKey & 0xFFFFFFFFL;
+
+        if(this.denseBuckets == 0)
+        {
+            return (int) ((h * this.numBuckets) >>> Integer.SIZE);
+        }
+
+        return (h < DENSE_KEYS)
+                ? (int) (h * this.denseBuckets / DENSE_KEYS)
+                : this.denseBuckets + (int) ((h - DENSE_KEYS) * (this.numBuckets - this.denseBuckets) / (HASH_RANGE - DENSE_KEYS));
+    }
+
+    private int positionOf(long hashedKey, int pilot)
+    {
+        final long displaced = hashedKey ^ HashFunction.mix(pilot);
+        return (int) (((displaced >>> Integer.SIZE) * this.tableSize) >>> Integer.SIZE);
+    }
+
+    private static int verificationFingerprint(long fingerprint)
+    {
+        return (int) HashFunction.mix(~fingerprint);
+    }
+
+
+
+    /* Tries to find a pilot for every bucket under the current seed.
+       Returns false when some bucket has no pilot within 16 bits, so the caller retries with a new seed */
+
+    private boolean build(long[] keyFingerprints)
+    {
+        final long[] hashedKeys = new long[this.size];
+        final int[] bucketOffsets = new int[this.numBuckets + 1];
+
+        for(int i = 0 ; i < this.size ; ++i)
+        {
+            hashedKeys[i] = this.hashedKey(keyFingerprints[i]);
+            ++bucketOffsets[this.bucketOf(hashedKeys[i]) + 1];
+        }
+
+        // Groups the hashed keys by bucket, and the buckets by decreasing size, with counting sorts
+        int largestBucket = 0;
+        for(int b = 0 ; b < this.numBuckets ; ++b)
+        {
+            largestBucket = Math.max(largestBucket, bucketOffsets[b + 1]);
+            bucketOffsets[b + 1] += bucketOffsets[b];
+        }
+
+        final long[] groupedKeys = new long[this.size];
+        final int[] nextSlot = new int[this.numBuckets];
+        System.arraycopy(bucketOffsets, 0, nextSlot, 0, this.numBuckets);
+        for(int i = 0 ; i < this.size ; ++i)
+        {
+            groupedKeys[nextSlot[this.bucketOf(hashedKeys[i])]++] = hashedKeys[i];
+        }
+
+        final int[] sizeOffsets = new int[largestBucket + 2];
+        for(int b = 0 ; b < this.numBuckets ; ++b)
+        {
+            ++sizeOffsets[largestBucket - (bucketOffsets[b + 1] - bucketOffsets[b]) + 1];
+        }
+        for(int s = 0 ; s <= largestBucket ; ++s)
+        {
+            sizeOffsets[s + 1] += sizeOffsets[s];
+        }
+        final int[] bucketOrder = new int[this.numBuckets];
+        for(int b = 0 ; b < this.numBuckets ; ++b)
+        {
+            bucketOrder[sizeOffsets[largestBucket - (bucketOffsets[b + 1] - bucketOffsets[b])]++] = b;
+        }
+
+        // Places the buckets, largest first
+        final long[] taken = new long[(this.tableSize + Long.SIZE - 1) / Long.SIZE];
+        final int[] positions = new int[largestBucket];
+        this.pilots = new short[this.numBuckets];
+
+        for(int bucket : bucketOrder)
+        {
+            final int from = bucketOffsets[bucket];
+            final int to = bucketOffsets[bucket + 1];
+            if(from == to) break;
+
+            // No pilot can separate two distinct keys that share a fingerprint
+            for(int i = from ; i < to ; ++i)
+            {
+                for(int j = i + 1 ; j < to ; ++j)
+                {
+                    if(groupedKeys[i] == groupedKeys[j])
+                    {
+                        throw new IllegalArgumentException("Two distinct keys share the same 64-bit fingerprint");
+                    }
+                }
+            }
+
+            int pilot = 0;
+            while(!this.tryPilot(groupedKeys, from, to, pilot, taken, positions))
+            {
+                if(++pilot > MAX_PILOT) return false;
+            }
+            this.pilots[bucket] = (short) pilot;
+        }
+
+        // Remaps the slots past the key count onto the free slots below it
+        this.remap = new int[this.tableSize - this.size];
+        int hole = 0;
+        for(int position = this.size ; position < this.tableSize ; ++position)
+        {
+            if((taken[position >>> 6] & (1L << position)) == 0) continue;
+
+            while((taken[hole >>> 6] & (1L << hole)) != 0) ++hole;
+            this.remap[position - this.size] = hole++;
+        }
+
+        return true;
+    }
+
+    /* Claims the slots of the bucket's keys under the given pilot, or leaves the table untouched on a clash */
+
+    private boolean tryPilot(long[] groupedKeys, int from, int to, int pilot, long[] taken, int[] positions)
+    {
+        for(int i = from ; i < to ; ++i)
+        {
+            final int position = this.positionOf(groupedKeys[i], pilot);
+
+            if((taken[position >>> 6] & (1L << position)) != 0)
+            {
+                // Releases the slots claimed by the bucket's earlier keys
+                for(int j = 0 ; j < i - from ; ++j)
+                {
+                    taken[positions[j] >>> 6] &= ~(1L << positions[j]);
+                }
+                return false;
+            }
+
+            taken[position >>> 6] |= 1L << position;
+            positions[i - from] = position;
+        }
+
+        return true;
+    }
+
+    private void storeVerification(String[] distinctKeys, long[] keyFingerprints)
+    {
+        if(this.verification == Verification.KEYS)
+        {
+            this.keys = new String[this.size];
+            for(int i = 0 ; i < this.size ; ++i)
+            {
+                this.keys[this.index(keyFingerprints[i])] = distinctKeys[i];
+            }
+        }
+        else if(this.verification == Verification.FINGERPRINTS)
+        {
+            this.fingerprints = new int[this.size];
+            for(int i = 0 ; i < this.size ; ++i)
+            {
+                this.fingerprints[this.index(keyFingerprints[i])] = verificationFingerprint(keyFingerprints[i]);
+            }
+        }
+    }
+
+
+
+    /* Minimal perfect hash of a fingerprint: an index in [0, size), distinct for every key of the set */
+
+    private int index(long fingerprint)
+    {
+        final long hashedKey = this.hashedKey(fingerprint);
+        final int position = this.positionOf(hashedKey, this.pilots[this.bucketOf(hashedKey)] & MAX_PILOT);
+
+        return (position < this.size) ? position : this.remap[position - this.size];
+    }
+
+    /* Returns the index in [0, size) of a key of the set, or -1 when verification rejects the key */
+
+    public int indexOf(String key)
+    {
+        if(this.size == 0) return -1;
+
+        final long fingerprint = HashFunction.fingerprint(key);
+        final int index = this.index(fingerprint);
+
+        switch(this.verification)
+        {
+            case KEYS:
+                return this.keys[index].equals(key) ? index : -1;
+            case FINGERPRINTS:
+                return (this.fingerprints[index] == verificationFingerprint(fingerprint)) ? index : -1;
+            default:
+                return index;
+        }
+    }
+
+    @Override
+    public boolean insert(String key)
+    {
+        throw new UnsupportedOperationException("Static perfect hash sets are immutable");
+    }
+
+    @Override
+    public boolean delete(String key)
+    {
+        throw new UnsupportedOperationException("Static perfect hash sets are immutable");
+    }
+
+    @Override
+    public boolean search(String key)
+    {
+        return this.indexOf(key) >= 0;
+    }
+}
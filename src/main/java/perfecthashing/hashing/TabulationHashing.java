@@ -0,0 +1,94 @@
+package perfecthashing.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/* Simple tabulation hashing: the fingerprint is split into 8 bytes, each byte indexes its own
+   table of random words and the looked up words are xor-ed together */
+public class TabulationHashing implements HashFunction {
+
+    private static final int CHARACTERS = Long.BYTES;
+    private static final int TABLE_SIZE = 1 << Byte.SIZE;
+
+    private final int[][] tables;
+    private final int capacity;
+
+    public TabulationHashing(int capacity)
+    {
+        this(capacity, new Random());
+    }
+
+    public TabulationHashing(int capacity, Random random)
+    {
+        this.capacity = capacity;
+        this.tables = new int[CHARACTERS][TABLE_SIZE];
+
+        for (int i = 0; i < CHARACTERS; ++i)
+        {
+            for (int j = 0; j < TABLE_SIZE; ++j)
+            {
+                this.tables[i][j] = random.nextInt();
+            }
+        }
+    }
+
+    @Override
+    public int hash(long fingerprint)
+    {
+        int h = 0;
+        for (int i = 0; i < CHARACTERS; ++i)
+        {
+            h ^= this.tables[i][(int) (fingerprint >>> (i * Byte.SIZE)) & (TABLE_SIZE - 1)];
+        }
+
+        // Scales the 32-bit hash into [0, capacity) without a division
+        return (int) (((h & 0xFFFFFFFFL) * this.capacity) >>> Integer.SIZE);
+    }
+
+
+
+    /* The object, its table array and the 8 tables */
+    @Override
+    public long memoryFootprint()
+    {
+        return MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE + Integer.BYTES)
+                + MemoryFootprint.arrayBytes(CHARACTERS, MemoryFootprint.REFERENCE)
+                + CHARACTERS * MemoryFootprint.arrayBytes(TABLE_SIZE, Integer.BYTES);
+    }
+
+
+
+    /* Serialized layout used by MappedPerfectHashSet: capacity, then the 8 tables of 256 ints */
+
+    int serializedSize()
+    {
+        return Integer.BYTES + CHARACTERS * TABLE_SIZE * Integer.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer)
+    {
+        buffer.putInt(this.capacity);
+        for (int[] table : this.tables)
+        {
+            for (int word : table)
+            {
+                buffer.putInt(word);
+            }
+        }
+    }
+
+    /* Evaluates a serialized function in place, without copying it out of the buffer */
+    static int hash(ByteBuffer buffer, int offset, long fingerprint)
+    {
+        final int tables = offset + Integer.BYTES;
+
+        int h = 0;
+        for (int i = 0; i < CHARACTERS; ++i)
+        {
+            final int character = (int) (fingerprint >>> (i * Byte.SIZE)) & (TABLE_SIZE - 1);
+            h ^= buffer.getInt(tables + (i * TABLE_SIZE + character) * Integer.BYTES);
+        }
+
+        return (int) (((h & 0xFFFFFFFFL) * buffer.getInt(offset)) >>> Integer.SIZE);
+    }
+}
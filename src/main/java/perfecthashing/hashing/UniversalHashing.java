@@ -1,80 +1,105 @@
 package perfecthashing.hashing;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
-public class UniversalHashing {
-    private final int[][] matrix;
+public class UniversalHashing implements HashFunction {
+    private final long[][] matrix;
     private final int b, u;
     private final int capacity;
+    private final long lastWordMask;
 
     public UniversalHashing(int b, int capacity) {
+        this(b, capacity, new Random());
+    }
+
+    public UniversalHashing(int b, int capacity, Random rand) {
         this.b = b;
         this.u = computeUBits(capacity);
         this.capacity = capacity;
-        this.matrix = new int[this.b][this.u];
-        GenerateRandomHash();
+        // Each row of the b x u bit matrix is packed into ceil(u / 64) words
+        this.matrix = new long[this.b][(this.u + Long.SIZE - 1) / Long.SIZE];
+        this.lastWordMask = (this.u % Long.SIZE == 0) ? -1L : (1L << (this.u % Long.SIZE)) - 1;
+        GenerateRandomHash(rand);
     }
 
-    private void GenerateRandomHash() {
-        Random rand = new Random();
+    private void GenerateRandomHash(Random rand) {
         for (int i = 0; i < b; i++) {
             for (int j = 0; j < u; j++) {
-                matrix[i][j] = rand.nextBoolean() ? 1 : 0;
+                if (rand.nextBoolean()) {
+                    matrix[i][j >>> 6] |= 1L << (j & 63);
+                }
             }
         }
     }
 
-    public int hash(String key) {
-        // Convert the key to a u-bit binary vector
-        int[] x = toBits(key, u);
-        // Create the vector result that equals to matrix(b,u) * x(u, 1)
-        int[] result = new int[b];
+    /* Hashes a key already reduced to its 64-bit fingerprint, allocating nothing */
+    @Override
+    public int hash(long fingerprint) {
+        // The u-bit key vector repeats the 64-bit fingerprint in every word
+        final long x = fingerprint;
+        final int words = matrix[0].length;
 
+        // Each result bit is the parity of (row AND x), i.e. matrix(b,u) * x(u, 1) over GF(2)
+        long hashValue = 0;
         for (int i = 0; i < b; i++) {
-            int sum = 0;
-            for (int j = 0; j < u; j++) {
-                sum += matrix[i][j] * x[j];
+            final long[] row = matrix[i];
+            long acc = 0;
+            for (int w = 0; w < words - 1; w++) {
+                acc ^= row[w] & x;
             }
-            result[i] = sum % 2;
+            acc ^= row[words - 1] & x & lastWordMask;
+            hashValue |= (long) (Long.bitCount(acc) & 1) << i;
         }
 
-        // Convert the binary key vector to long and ensure positive index
-        long hashValue = toInt(result);
+        // Ensure positive index
         int index = Math.abs((int)(hashValue % capacity));
         return index;
     }
 
-    private int[] toBits(String key, int u) {
-        // Improve the hashing to reduce collisions
-        long hash = 0;
-
-        // Use multiple mixing techniques for better distribution
-        for (int i = 0; i < key.length(); i++) {
-            hash = 31 * hash + key.charAt(i);
-            // Add rotations for better bit distribution
-            hash = (hash << 5) | (hash >>> 59);
-        }
-
-        // Add key length influence
-        hash = hash ^ key.length();
+    /* The object, its row array and the b rows */
+    @Override
+    public long memoryFootprint() {
+        return MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE + 3 * Integer.BYTES + Long.BYTES)
+                + MemoryFootprint.arrayBytes(b, MemoryFootprint.REFERENCE)
+                + b * MemoryFootprint.arrayBytes(matrix[0].length, Long.BYTES);
+    }
 
-        // Ensure we get positive values
-        hash = Math.abs(hash);
+    /* Serialized layout used by MappedPerfectHashSet:
+       capacity, b, words (ints), lastWordMask (long), then the b x words matrix row by row (longs) */
+    int serializedSize() {
+        return 3 * Integer.BYTES + Long.BYTES + b * matrix[0].length * Long.BYTES;
+    }
 
-        int[] bits = new int[u];
-        for (int i = 0; i < u; i++) {
-            bits[i] = (int)((hash >> i) & 1);
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(capacity).putInt(b).putInt(matrix[0].length).putLong(lastWordMask);
+        for (long[] row : matrix) {
+            for (long word : row) {
+                buffer.putLong(word);
+            }
         }
-        return bits;
     }
 
-    private long toInt(int[] bits) {
-        long value = 0;
-        for (int i = 0; i < bits.length; i++) {
-            if(bits[i] == 1)
-                value |= (1L << i);
+    /* Evaluates a serialized function in place, without copying it out of the buffer */
+    static int hash(ByteBuffer buffer, int offset, long fingerprint) {
+        final int capacity = buffer.getInt(offset);
+        final int b = buffer.getInt(offset + Integer.BYTES);
+        final int words = buffer.getInt(offset + 2 * Integer.BYTES);
+        final long lastWordMask = buffer.getLong(offset + 3 * Integer.BYTES);
+
+        int position = offset + 3 * Integer.BYTES + Long.BYTES;
+        long hashValue = 0;
+        for (int i = 0; i < b; i++) {
+            long acc = 0;
+            for (int w = 0; w < words - 1; w++, position += Long.BYTES) {
+                acc ^= buffer.getLong(position) & fingerprint;
+            }
+            acc ^= buffer.getLong(position) & fingerprint & lastWordMask;
+            position += Long.BYTES;
+            hashValue |= (long) (Long.bitCount(acc) & 1) << i;
         }
-        return value;
+
+        return Math.abs((int)(hashValue % capacity));
     }
 
     /* Computes the number of bits needed in the hash function matrix row dimension */
@@ -87,4 +112,3 @@ public class UniversalHashing {
         return Math.min(maxBits, Math.max(minBits, bitsNeeded));
     }
 }
-
@@ -0,0 +1,101 @@
+package perfecthashing.hashing;
+
+import java.nio.ByteBuffer;
+
+/* Compares stored UTF-8 key bytes against a String by encoding it on the fly, so lookups allocate nothing.
+   A key with an unpaired surrogate has no UTF-8 encoding (String.getBytes turns it into '?'), so it never
+   matches stored bytes, and writers refuse to store it */
+final class Utf8 {
+
+    private Utf8()
+    {
+    }
+
+    /* Returns true if the length bytes at offset are the UTF-8 encoding of key, false for any key with an unpaired surrogate */
+    static boolean equals(ByteBuffer buffer, int offset, int length, String key)
+    {
+        final int end = offset + length;
+        int position = offset;
+        final int keyLength = key.length();
+
+        for (int i = 0; i < keyLength; ++i)
+        {
+            int codePoint = key.charAt(i);
+
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < keyLength && Character.isLowSurrogate(key.charAt(i + 1)))
+            {
+                codePoint = Character.toCodePoint((char) codePoint, key.charAt(++i));
+            }
+            else if (Character.isSurrogate((char) codePoint))
+            {
+                // Would otherwise match the '?' a stored key with a literal '?' was encoded to
+                return false;
+            }
+
+            if (codePoint < 0x80)
+            {
+                if (position >= end || buffer.get(position++) != (byte) codePoint) return false;
+            }
+            else if (codePoint < 0x800)
+            {
+                if (position + 2 > end
+                    || buffer.get(position++) != (byte) (0xC0 | (codePoint >>> 6))
+                    || buffer.get(position++) != (byte) (0x80 | (codePoint & 0x3F))) return false;
+            }
+            else if (codePoint < 0x10000)
+            {
+                if (position + 3 > end
+                    || buffer.get(position++) != (byte) (0xE0 | (codePoint >>> 12))
+                    || buffer.get(position++) != (byte) (0x80 | ((codePoint >>> 6) & 0x3F))
+                    || buffer.get(position++) != (byte) (0x80 | (codePoint & 0x3F))) return false;
+            }
+            else
+            {
+                if (position + 4 > end
+                    || buffer.get(position++) != (byte) (0xF0 | (codePoint >>> 18))
+                    || buffer.get(position++) != (byte) (0x80 | ((codePoint >>> 12) & 0x3F))
+                    || buffer.get(position++) != (byte) (0x80 | ((codePoint >>> 6) & 0x3F))
+                    || buffer.get(position++) != (byte) (0x80 | (codePoint & 0x3F))) return false;
+            }
+        }
+
+        return position == end;
+    }
+
+    /* Number of bytes String.getBytes(UTF_8) produces for key, computed without encoding it,
+       or -1 when key holds an unpaired surrogate and has no UTF-8 encoding */
+    static int encodedLength(String key)
+    {
+        final int keyLength = key.length();
+        int length = 0;
+
+        for (int i = 0; i < keyLength; ++i)
+        {
+            final char c = key.charAt(i);
+
+            if (c < 0x80)
+            {
+                length += 1;
+            }
+            else if (c < 0x800)
+            {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < keyLength && Character.isLowSurrogate(key.charAt(i + 1)))
+            {
+                length += 4;
+                ++i;
+            }
+            else if (Character.isSurrogate(c))
+            {
+                return -1;
+            }
+            else
+            {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,147 @@
+package perfecthashing.hashing;
+
+import java.util.Arrays;
+
+/* Static xor filter (Graf and Lemire) for sets that no longer change.
+   Each key maps to one slot in each third of a byte array, and the array is solved so that the three
+   bytes of every key xor to its own 8-bit tag. A lookup reads three bytes: about 1.23 bytes per key
+   for a false positive rate of 1/256. The slots are solved by peeling: a slot that only one key maps to
+   is left for that key, which is then taken out of the others, and a seed that leaves keys unpeeled is
+   stepped until one does not */
+public class XorFilter implements MembershipFilter {
+
+    /* The filter object: a reference, an int and a long */
+    private static final long SHALLOW_BYTES = MemoryFootprint.objectBytes(MemoryFootprint.REFERENCE + Integer.BYTES + Long.BYTES);
+
+    private final byte[] slots;
+    private final int blockLength;
+    private final long seed;
+
+
+
+    /* Constructors */
+
+    /* Builds the filter of the given key fingerprints, which may repeat */
+    public XorFilter(long[] fingerprints)
+    {
+        final long[] keys = distinct(fingerprints);
+
+        this.blockLength = (32 + (int) Math.ceil(1.23 * keys.length)) / 3;
+        this.slots = new byte[3 * this.blockLength];
+
+        final int[] counts = new int[this.slots.length];
+        final long[] hashes = new long[this.slots.length];
+        final int[] alone = new int[this.slots.length];
+        final long[] peeledHashes = new long[keys.length];
+        final byte[] peeledThirds = new byte[keys.length];
+
+        long seed = HashFunction.mix(keys.length);
+        int peeled;
+        while(true)
+        {
+            Arrays.fill(counts, 0);
+            Arrays.fill(hashes, 0);
+
+            for(long key : keys)
+            {
+                final long hash = HashFunction.mix(key ^ seed);
+                for(int third = 0 ; third < 3 ; ++third)
+                {
+                    final int slot = this.slot(hash, third);
+                    ++counts[slot];
+                    hashes[slot] ^= hash;
+                }
+            }
+
+            // Counts only go down, so a slot is queued at most once
+            int queued = 0;
+            for(int slot = 0 ; slot < counts.length ; ++slot)
+            {
+                if(counts[slot] == 1) alone[queued++] = slot;
+            }
+
+            peeled = 0;
+            while(queued > 0)
+            {
+                final int slot = alone[--queued];
+                if(counts[slot] != 1) continue;
+
+                // The xor of the hashes mapped to a slot with a count of one is the hash of its only key
+                final long hash = hashes[slot];
+                for(int third = 0 ; third < 3 ; ++third)
+                {
+                    final int other = this.slot(hash, third);
+                    if(other == slot)
+                    {
+                        peeledThirds[peeled] = (byte) third;
+                    }
+                    --counts[other];
+                    hashes[other] ^= hash;
+                    if(counts[other] == 1) alone[queued++] = other;
+                }
+                peeledHashes[peeled++] = hash;
+            }
+
+            if(peeled == keys.length) break;
+
+            seed = SeededHashing.nextSeed(seed);
+        }
+        this.seed = seed;
+
+        // Keys are assigned in the reverse peeling order, so the slot left to each key is not read by any later one
+        for(int i = peeled - 1 ; i >= 0 ; --i)
+        {
+            final long hash = peeledHashes[i];
+            final int third = peeledThirds[i];
+
+            byte value = tag(hash);
+            for(int other = 0 ; other < 3 ; ++other)
+            {
+                if(other != third) value ^= this.slots[this.slot(hash, other)];
+            }
+            this.slots[this.slot(hash, third)] = value;
+        }
+    }
+
+    private static long[] distinct(long[] fingerprints)
+    {
+        final long[] sorted = fingerprints.clone();
+        Arrays.sort(sorted);
+
+        int count = 0;
+        for(int i = 0 ; i < sorted.length ; ++i)
+        {
+            if(i == 0 || sorted[i] != sorted[i - 1]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+
+
+    /* Getters */
+
+    @Override
+    public long memoryFootprint()
+    {
+        return MemoryFootprint.arrayBytes(this.slots.length, Byte.BYTES) + SHALLOW_BYTES;
+    }
+
+    @Override
+    public boolean mightContain(long fingerprint)
+    {
+        final long hash = HashFunction.mix(fingerprint ^ this.seed);
+        return (tag(hash) ^ this.slots[this.slot(hash, 0)] ^ this.slots[this.slot(hash, 1)] ^ this.slots[this.slot(hash, 2)]) == 0;
+    }
+
+    /* Slot of a key in the given third, from a different 32-bit window of its hash for each third */
+    private int slot(long hash, int third)
+    {
+        final long window = Long.rotateLeft(hash, 21 * third) & 0xFFFFFFFFL;
+        return (int) ((window * this.blockLength) >>> Integer.SIZE) + third * this.blockLength;
+    }
+
+    private static byte tag(long hash)
+    {
+        return (byte) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,47 @@
+package perfecthashing.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/* RFC 4180 CSV: fields holding a comma, a quote or a line break are quoted, with quotes doubled */
+class CsvResultSink implements ResultSink {
+    private final BufferedWriter writer;
+
+    CsvResultSink(String filePath) throws IOException {
+        writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> void setRow(T[] data) {
+        try {
+            for (int i = 0; i < data.length; ++i) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(String.valueOf(data[i])));
+            }
+            writer.write("\r\n");
+
+            // Rows reach the file as they are produced, so a long sweep can be followed and survives a crash
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String escape(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
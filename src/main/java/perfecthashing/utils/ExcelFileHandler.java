@@ -7,16 +7,26 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
-class ExcelFileHandler{
+class ExcelFileHandler implements ResultSink {
+    /* Rows a streaming workbook keeps in memory before flushing older ones to its temporary file */
+    private static final int STREAMING_WINDOW = 100;
+
     private int currentRow;
     private Sheet dataSheet;
     private Workbook workbook;
 
     public ExcelFileHandler(String fileName)
     {
-        workbook = new XSSFWorkbook();
+        this(fileName, false);
+    }
+
+    /* A streaming handler writes through SXSSF, keeping memory flat however many rows are added */
+    public ExcelFileHandler(String fileName, boolean streaming)
+    {
+        workbook = streaming ? new SXSSFWorkbook(STREAMING_WINDOW) : new XSSFWorkbook();
         dataSheet = workbook.createSheet(fileName);
         currentRow = 0;
     }
@@ -29,6 +39,7 @@ class ExcelFileHandler{
         }
     }
 
+    @Override
     public <T> void setRow(T data[]) {
         Row row = dataSheet.createRow(currentRow++);
 
@@ -44,6 +55,10 @@ class ExcelFileHandler{
         final String dataSheetName = dataSheet.getSheetName();
         try (FileOutputStream fileOut = new FileOutputStream(dataSheetName + ".xlsx")) {
             workbook.write(fileOut);
+            if (workbook instanceof SXSSFWorkbook) {
+                // Deletes the temporary file backing the flushed rows
+                ((SXSSFWorkbook) workbook).dispose();
+            }
             workbook.close();
             System.out.println("Excel file saved: " + dataSheetName + ".xlsx");
         } catch (IOException e) {
@@ -51,6 +66,11 @@ class ExcelFileHandler{
         }
     }
 
+    @Override
+    public void close() {
+        saveToFile();
+    }
+
 
 }
 
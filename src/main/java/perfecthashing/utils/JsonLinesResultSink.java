@@ -0,0 +1,81 @@
+package perfecthashing.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/* JSON lines: the first row gives the field names, every later row becomes one object on its own line.
+   Numbers stay numbers, except NaN and infinities, which JSON cannot represent and become null */
+class JsonLinesResultSink implements ResultSink {
+    private final BufferedWriter writer;
+    private String[] fieldNames;
+
+    JsonLinesResultSink(String filePath) throws IOException {
+        writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> void setRow(T[] data) {
+        if (fieldNames == null) {
+            fieldNames = new String[data.length];
+            for (int i = 0; i < data.length; ++i) {
+                fieldNames[i] = String.valueOf(data[i]);
+            }
+            return;
+        }
+
+        final StringBuilder line = new StringBuilder("{");
+        for (int i = 0; i < data.length; ++i) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendString(line, (i < fieldNames.length) ? fieldNames[i] : "column" + i);
+            line.append(':');
+            appendValue(line, data[i]);
+        }
+        line.append('}').append('\n');
+
+        try {
+            writer.write(line.toString());
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            final double number = ((Number) value).doubleValue();
+            line.append(Double.isFinite(number) ? String.valueOf(number) : "null");
+        } else if (value instanceof Number) {
+            line.append(value);
+        } else if (value == null) {
+            line.append("null");
+        } else {
+            appendString(line, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,199 @@
+package perfecthashing.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/* Streams newline-delimited UTF-8 keys out of a file through large FileChannel reads.
+   A line ends at '\n' or '\r'. Leading and trailing whitespace and control bytes are cut off in the
+   byte buffer and blank lines are skipped there too, so the only allocation per key is its String */
+public class KeyFileReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int ESTIMATE_SAMPLE_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long start;
+    private final long end;
+    private ByteBuffer buffer;
+    private long bytesRead;
+    private boolean endOfFile;
+
+    /* Reads the keys of the byte range [start, end), which should begin and end on line boundaries */
+    public KeyFileReader(Path path, long start, long end, int bufferSize) throws IOException {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The buffer size must be positive");
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileSize = channel.size();
+        this.start = start;
+        this.end = Math.min(end, fileSize);
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.flip();
+    }
+
+    public KeyFileReader(Path path, int bufferSize) throws IOException {
+        this(path, 0, Long.MAX_VALUE, bufferSize);
+    }
+
+    public KeyFileReader(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    /* Cuts a file into at most chunks byte ranges of similar size, each starting right after a line terminator.
+       Returns the chunks + 1 boundaries; neighbouring boundaries are equal where a chunk came out empty */
+    public static long[] splitLines(Path path, int chunks) throws IOException {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("The chunk count must be positive");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long[] boundaries = new long[chunks + 1];
+            final ByteBuffer probe = ByteBuffer.allocate(4096);
+            boundaries[chunks] = size;
+
+            for (int k = 1; k < chunks; ++k) {
+                long boundary = Math.max(boundaries[k - 1], size / chunks * k);
+
+                // Moves the boundary to just past the first terminator at or after the byte before it
+                search:
+                for (long position = Math.max(0, boundary - 1); position < size; position += probe.limit()) {
+                    probe.clear();
+                    if (channel.read(probe, position) < 0) {
+                        break;
+                    }
+                    probe.flip();
+                    for (int i = 0; i < probe.limit(); ++i) {
+                        final byte b = probe.get(i);
+                        if (b == '\n' || b == '\r') {
+                            boundary = position + i + 1;
+                            break search;
+                        }
+                    }
+                    boundary = size;
+                }
+                boundaries[k] = Math.min(Math.max(boundary, boundaries[k - 1]), size);
+            }
+            return boundaries;
+        }
+    }
+
+    /* Estimates the number of lines of a file from the average line length of its first bytes.
+       Exact for files that fit in the sample; blank and repeated lines are counted like any other */
+    public static long estimateLineCount(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final ByteBuffer sample = ByteBuffer.allocate((int) Math.min(size, ESTIMATE_SAMPLE_SIZE));
+            while (sample.hasRemaining()) {
+                if (channel.read(sample, sample.position()) < 0) {
+                    break;
+                }
+            }
+            sample.flip();
+
+            long lines = 0;
+            for (int i = 0; i < sample.limit(); ++i) {
+                final byte b = sample.get(i);
+                // "\r\n" is one terminator
+                if (b == '\n' || (b == '\r' && (i + 1 == sample.limit() || sample.get(i + 1) != '\n'))) {
+                    ++lines;
+                }
+            }
+
+            if (sample.limit() == size) {
+                final boolean unterminated = size > 0 && sample.get((int) size - 1) != '\n' && sample.get((int) size - 1) != '\r';
+                return lines + (unterminated ? 1 : 0);
+            }
+            return (lines == 0) ? 1 : size * lines / sample.limit();
+        }
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /* Bytes of the range consumed by the keys returned so far, terminators and skipped lines included */
+    public long getPosition() {
+        return bytesRead - buffer.remaining();
+    }
+
+    /* Length of the range read, the whole file unless a range was given */
+    public long getLength() {
+        return Math.max(0, end - start);
+    }
+
+    /* Returns the next non-blank key with its surrounding whitespace removed, or null at the end of the range */
+    public String readKey() throws IOException {
+        while (true) {
+            final byte[] bytes = buffer.array();
+            final int lineStart = buffer.position();
+            final int limit = buffer.limit();
+
+            int lineEnd = lineStart;
+            while (lineEnd < limit && bytes[lineEnd] != '\n' && bytes[lineEnd] != '\r') {
+                ++lineEnd;
+            }
+
+            // The line may continue past the buffered bytes
+            if (lineEnd == limit && !endOfFile) {
+                fill();
+                continue;
+            }
+            if (lineStart == limit) {
+                return null;
+            }
+
+            buffer.position((lineEnd < limit) ? lineEnd + 1 : lineEnd);
+
+            int from = lineStart;
+            int to = lineEnd;
+            while (from < to && (bytes[from] & 0xFF) <= ' ') {
+                ++from;
+            }
+            while (to > from && (bytes[to - 1] & 0xFF) <= ' ') {
+                --to;
+            }
+
+            if (from < to) {
+                return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /* Keeps the unread bytes and appends as many file bytes as fit, doubling the buffer for a line longer than it */
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+
+        // Never reads past the end of the range
+        final int room = (int) Math.min(buffer.remaining(), Math.max(0, end - start - bytesRead));
+        buffer.limit(buffer.position() + room);
+
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, start + bytesRead);
+            if (read < 0) {
+                break;
+            }
+            bytesRead += read;
+        }
+        endOfFile = buffer.hasRemaining() || start + bytesRead >= end;
+
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
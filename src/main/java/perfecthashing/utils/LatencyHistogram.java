@@ -0,0 +1,81 @@
+package perfecthashing.utils;
+
+import java.util.Arrays;
+
+/* Log-bucketed histogram of non-negative values such as latencies in nanoseconds, in the HDR histogram style.
+   Values below 2^SUB_BUCKET_BITS get a bucket each; above that, every power of two is split into
+   2^(SUB_BUCKET_BITS - 1) equal buckets, so a recorded value is known to within 1 / 2^(SUB_BUCKET_BITS - 1)
+   of itself whatever its magnitude. Recording is a few shifts and an array increment, with no allocation */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS];
+    private long totalCount;
+    private long max;
+
+    /* Records one value; negative values count as zero */
+    public void record(long value) {
+        value = Math.max(0, value);
+        ++counts[indexOf(value)];
+        ++totalCount;
+        max = Math.max(max, value);
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /* Smallest value v such that at least percentile % of the recorded values are at most v,
+       up to the bucket resolution; 0 when nothing was recorded */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int index = 0; index < counts.length; ++index) {
+            cumulative += counts[index];
+            if (cumulative >= rank) {
+                return Math.min(highestValueOf(index), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        max = 0;
+    }
+
+    private static int indexOf(long value) {
+        final int shift = (Long.SIZE - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        if (shift <= 0) {
+            return (int) value;
+        }
+
+        // The top SUB_BUCKET_BITS bits of the value, whose leading bit is always set
+        final int top = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (top - HALF_SUB_BUCKETS);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        final long top = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        final long highest = ((top + 1) << shift) - 1;
+
+        // The very last bucket reaches past Long.MAX_VALUE
+        return (highest < 0) ? Long.MAX_VALUE : highest;
+    }
+}
@@ -1,14 +1,22 @@
 package perfecthashing.utils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.stream.DoubleStream;
 
+import perfecthashing.hashing.FrozenPerfectHashSet;
+import perfecthashing.hashing.HashFamily;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.MemoryFootprint;
 import perfecthashing.hashing.PerfectLinearHashSet;
 import perfecthashing.hashing.PerfectQuadraticHashSet;
+import perfecthashing.hashing.StaticPerfectHashSet;
 
 
 public class PerfectHashingStatistics {
@@ -18,9 +26,14 @@ public class PerfectHashingStatistics {
     private static final double NANO_TO_MILLI = 1e6;
     private static final int MAX_KEY_LENGTH = 32;
     private static final double AVG_RUNS = 1e2;
+    private static final int LATENCY_RUNS = 10;
+    private static final double NANO_TO_MICRO = 1e3;
+    private static final String[] LATENCY_BACKENDS = {"Linear", "Quadratic"};
+    private static final String[] LATENCY_OPERATIONS = {"Insert", "Search", "Delete"};
 
     private static PerfectLinearHashSet perfectLinearHashSet;
     private static PerfectQuadraticHashSet perfectQuadraticHashSet;
+    private static StaticPerfectHashSet staticPerfectHashSet;
 
 
     public static Double measureExecutionTime(Runnable function) {
@@ -30,6 +43,15 @@ public class PerfectHashingStatistics {
     }
 
 
+    /* Times every call on its own, so that the rare inserts that rehash or resize show up in the tail */
+    private static void recordLatencies(List<String> keys, Predicate<String> operation, LatencyHistogram histogram) {
+        for (String key : keys) {
+            long startTime = System.nanoTime();
+            operation.test(key);
+            histogram.record(System.nanoTime() - startTime);
+        }
+    }
+
     private static List<String> generateRandomStrings(int count) {
         List<String> keys = new ArrayList<>();
         for (int i = 0; i < count; ++i) {
@@ -45,7 +67,39 @@ public class PerfectHashingStatistics {
 
 
 
-    public static void runStatisticsOnHashingOperations(){
+    /* Opens a sink and registers it for closing once the run ends, however it ends */
+    private static ResultSink open(ResultFormat format, String name, List<ResultSink> sinks) throws IOException {
+        ResultSink sink = format.open(name);
+        sinks.add(sink);
+        return sink;
+    }
+
+    public static void runStatisticsOnHashingOperations() {
+        runStatisticsOnHashingOperations(ResultFormat.XLSX);
+    }
+
+    /* Writes one table per statistic in the given format; the streaming formats keep memory flat over the sweep */
+    public static void runStatisticsOnHashingOperations(ResultFormat format) {
+        List<ResultSink> sinks = new ArrayList<>();
+        try {
+            runStatistics(format, sinks);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error writing statistics: " + e.getMessage());
+            return;
+        } finally {
+            for (ResultSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing statistics file: " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println("Statistics generated and saved to " + format + " files.");
+    }
+
+    private static void runStatistics(ResultFormat format, List<ResultSink> sinks) throws IOException {
         Set<Integer> uniquePoints = new LinkedHashSet<>();
         DoubleStream.iterate(MIN_KEYS,
                 n -> n * Math.pow((double) MAX_KEYS / MIN_KEYS, 1.0 / (DATA_POINTS - 1)))
@@ -55,21 +109,42 @@ public class PerfectHashingStatistics {
 
         int[] points = uniquePoints.stream().mapToInt(Integer::intValue).toArray();
 
-        ExcelFileHandler insertionStatistics = new ExcelFileHandler("InsertionStatistics");
+        ResultSink insertionStatistics = open(format, "InsertionStatistics", sinks);
         insertionStatistics.setRow(new String[]{"Key Count", "Linear Time", "Quadratic Time"});
 
-        ExcelFileHandler searchStatistics = new ExcelFileHandler("SearchStatistics");
+        ResultSink searchStatistics = open(format, "SearchStatistics", sinks);
         searchStatistics.setRow(new String[]{"Key Count", "Linear Time", "Quadratic Time"});
 
-        ExcelFileHandler deletionStatistics = new ExcelFileHandler("DeletionStatistics");
+        ResultSink deletionStatistics = open(format, "DeletionStatistics", sinks);
         deletionStatistics.setRow(new String[]{"Key Count", "Linear Time", "Quadratic Time"});
 
-        ExcelFileHandler collisionStatistics = new ExcelFileHandler("CollisionStatistics");
+        ResultSink collisionStatistics = open(format, "CollisionStatistics", sinks);
         collisionStatistics.setRow(new String[]{"Key Count", "Linear Collisions", "Quadratic Collisions"});
 
-        ExcelFileHandler rehashingStatistics = new ExcelFileHandler("RehashingStatistics");
+        ResultSink rehashingStatistics = open(format, "RehashingStatistics", sinks);
         rehashingStatistics.setRow(new String[]{"Key Count", "Linear Rehashing", "Quadratic Rehashing"});
 
+        final HashFamily[] families = HashFamily.values();
+        ResultSink hashFamilyStatistics = open(format, "HashFamilyStatistics", sinks);
+        String[] hashFamilyHeader = new String[1 + 2 * families.length];
+        hashFamilyHeader[0] = "Key Count";
+        for (int f = 0; f < families.length; ++f) {
+            hashFamilyHeader[1 + 2 * f] = families[f] + " Insertion Time";
+            hashFamilyHeader[2 + 2 * f] = families[f] + " Search Time";
+        }
+        hashFamilyStatistics.setRow(hashFamilyHeader);
+
+        ResultSink staticStatistics = open(format, "StaticStatistics", sinks);
+        staticStatistics.setRow(new String[]{"Key Count", "Build Time", "Search Time", "Bits Per Key"});
+
+        ResultSink memoryStatistics = open(format, "MemoryStatistics", sinks);
+        memoryStatistics.setRow(new String[]{"Key Count", "Backend", "Key Bytes", "Slot Bytes", "Hash Function Bytes",
+                                             "Header Bytes", "Total Bytes", "Bytes Per Key"});
+
+        ResultSink latencyStatistics = open(format, "LatencyStatistics", sinks);
+        latencyStatistics.setRow(new String[]{"Key Count", "Backend", "Operation", "Operations",
+                                              "p50 (us)", "p99 (us)", "p99.9 (us)", "Max (us)"});
+
         for(int i = 0; i < points.length; ++i) {
             List<String> keys = generateRandomStrings(points[i]);
 
@@ -84,6 +159,11 @@ public class PerfectHashingStatistics {
             int avgQuadraticCollisions = 0;
             int avgLinearRehashing = 0;
             int avgQuadraticRehashing = 0;
+            double[] avgFamilyInsertionTime = new double[families.length];
+            double[] avgFamilySearchTime = new double[families.length];
+            double avgStaticBuildTime = 0;
+            double avgStaticSearchTime = 0;
+            double avgStaticBitsPerKey = 0;
 
             for(int j = 0; j < AVG_RUNS; ++j) {
                 // Linear hash table operations
@@ -131,6 +211,35 @@ public class PerfectHashingStatistics {
 
                 avgQuadraticCollisions += perfectQuadraticHashSet.getCollisions();
                 avgQuadraticRehashing += perfectQuadraticHashSet.getRehashingTrials();
+
+                // Linear hash table operations per hash family
+                for (int f = 0; f < families.length; ++f) {
+                    perfectLinearHashSet = new PerfectLinearHashSet(families[f]);
+                    avgFamilyInsertionTime[f] += measureExecutionTime(() -> {
+                        for (String key : keys) {
+                            perfectLinearHashSet.insert(key);
+                        }
+                    });
+
+                    avgFamilySearchTime[f] += measureExecutionTime(() -> {
+                        for (String key : keys) {
+                            perfectLinearHashSet.search(key);
+                        }
+                    });
+                }
+
+                // Static minimal perfect hash operations, built at once from the whole key list
+                avgStaticBuildTime += measureExecutionTime(() -> {
+                    staticPerfectHashSet = new StaticPerfectHashSet(keys);
+                });
+
+                avgStaticSearchTime += measureExecutionTime(() -> {
+                    for (String key : keys) {
+                        staticPerfectHashSet.search(key);
+                    }
+                });
+
+                avgStaticBitsPerKey += staticPerfectHashSet.getBitsPerKey();
             }
 
             // Calculate averages
@@ -151,21 +260,69 @@ public class PerfectHashingStatistics {
             Object[] rowDataDeletion = {(double)points[i], avgLinearDeleteTime, avgQuadraticDeleteTime};
             Object[] rowDataCollision = {(double)points[i], avgLinearCollisions, avgQuadraticCollisions};
             Object[] rowDataRehashing = {(double)points[i], avgLinearRehashing, avgQuadraticRehashing};
+            Object[] rowDataStatic = {(double)points[i], avgStaticBuildTime / AVG_RUNS, avgStaticSearchTime / AVG_RUNS, avgStaticBitsPerKey / AVG_RUNS};
+            Object[] rowDataHashFamily = new Object[1 + 2 * families.length];
+            rowDataHashFamily[0] = (double)points[i];
+            for (int f = 0; f < families.length; ++f) {
+                rowDataHashFamily[1 + 2 * f] = avgFamilyInsertionTime[f] / AVG_RUNS;
+                rowDataHashFamily[2 + 2 * f] = avgFamilySearchTime[f] / AVG_RUNS;
+            }
 
             insertionStatistics.setRow(rowDataInsertion);
             searchStatistics.setRow(rowDataSearch);
             deletionStatistics.setRow(rowDataDeletion);
             collisionStatistics.setRow(rowDataCollision);
             rehashingStatistics.setRow(rowDataRehashing);
-        }
+            hashFamilyStatistics.setRow(rowDataHashFamily);
+            staticStatistics.setRow(rowDataStatic);
+
+            // Estimated heap use of each backend holding all the keys, the dynamic ones grown by single inserts
+            PerfectLinearHashSet filledLinearHashSet = new PerfectLinearHashSet();
+            filledLinearHashSet.insertAll(keys);
+            PerfectQuadraticHashSet filledQuadraticHashSet = new PerfectQuadraticHashSet();
+            filledQuadraticHashSet.insertAll(keys);
+
+            IPerfectHashSet[] filledHashSets = {filledLinearHashSet, filledQuadraticHashSet, new StaticPerfectHashSet(keys),
+                                                filledLinearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.STRINGS),
+                                                filledLinearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA)};
+            String[] filledBackends = {"Linear", "Quadratic", "Static", "Frozen", "Frozen arena"};
+            for (int b = 0; b < filledHashSets.length; ++b) {
+                MemoryFootprint footprint = filledHashSets[b].memoryFootprint();
+                memoryStatistics.setRow(new Object[]{(double)points[i], filledBackends[b], (double)footprint.getKeyBytes(),
+                                                     (double)footprint.getSlotBytes(), (double)footprint.getHashFunctionBytes(),
+                                                     (double)footprint.getHeaderBytes(), (double)footprint.getTotalBytes(),
+                                                     footprint.getBytesPerKey(filledHashSets[b].getSize())});
+            }
+
+            // Per-operation latencies, from runs of their own so that the timing calls do not skew the means above
+            LatencyHistogram[][] latencies = new LatencyHistogram[LATENCY_BACKENDS.length][LATENCY_OPERATIONS.length];
+            for (LatencyHistogram[] backendLatencies : latencies) {
+                for (int op = 0; op < LATENCY_OPERATIONS.length; ++op) {
+                    backendLatencies[op] = new LatencyHistogram();
+                }
+            }
 
-        insertionStatistics.saveToFile();
-        searchStatistics.saveToFile();
-        deletionStatistics.saveToFile();
-        collisionStatistics.saveToFile();
-        rehashingStatistics.saveToFile();
+            for (int j = 0; j < LATENCY_RUNS; ++j) {
+                IPerfectHashSet[] hashSets = {new PerfectLinearHashSet(), new PerfectQuadraticHashSet()};
+                for (int b = 0; b < hashSets.length; ++b) {
+                    recordLatencies(keys, hashSets[b]::insert, latencies[b][0]);
+                    recordLatencies(keys, hashSets[b]::search, latencies[b][1]);
+                    recordLatencies(keys, hashSets[b]::delete, latencies[b][2]);
+                }
+            }
 
-        System.out.println("Statistics generated and saved to Excel files.");
+            for (int b = 0; b < LATENCY_BACKENDS.length; ++b) {
+                for (int op = 0; op < LATENCY_OPERATIONS.length; ++op) {
+                    LatencyHistogram histogram = latencies[b][op];
+                    latencyStatistics.setRow(new Object[]{(double)points[i], LATENCY_BACKENDS[b], LATENCY_OPERATIONS[op],
+                                                          (double)histogram.getCount(),
+                                                          histogram.getValueAtPercentile(50) / NANO_TO_MICRO,
+                                                          histogram.getValueAtPercentile(99) / NANO_TO_MICRO,
+                                                          histogram.getValueAtPercentile(99.9) / NANO_TO_MICRO,
+                                                          histogram.getMax() / NANO_TO_MICRO});
+                }
+            }
+        }
     }
 
 
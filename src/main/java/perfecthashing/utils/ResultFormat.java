@@ -0,0 +1,60 @@
+package perfecthashing.utils;
+
+import java.io.IOException;
+import java.util.StringJoiner;
+
+/* File formats PerfectHashingStatistics can write its tables in */
+public enum ResultFormat {
+
+    /* One in-memory workbook per table, written out when the table is closed */
+    XLSX {
+        @Override
+        public ResultSink open(String name) {
+            return new ExcelFileHandler(name, false);
+        }
+    },
+
+    /* Excel through a streaming SXSSF workbook that only keeps a window of rows in memory */
+    STREAMING_XLSX {
+        @Override
+        public ResultSink open(String name) {
+            return new ExcelFileHandler(name, true);
+        }
+    },
+
+    /* Comma-separated values, one line per row, written as rows arrive */
+    CSV {
+        @Override
+        public ResultSink open(String name) throws IOException {
+            return new CsvResultSink(name + ".csv");
+        }
+    },
+
+    /* One JSON object per row keyed by the header, written as rows arrive */
+    JSON_LINES {
+        @Override
+        public ResultSink open(String name) throws IOException {
+            return new JsonLinesResultSink(name + ".jsonl");
+        }
+    };
+
+
+    /* Opens the sink for the table of the given name, named after it in the working directory */
+    public abstract ResultSink open(String name) throws IOException;
+
+    /* Parses a format name such as "xlsx", "streaming-xlsx", "csv" or "json-lines".
+       Throws IllegalArgumentException listing the valid names for any other name */
+    public static ResultFormat forName(String name) {
+        final String normalized = name.trim().toUpperCase().replace('-', '_');
+        final StringJoiner names = new StringJoiner(", ");
+
+        for (ResultFormat format : values()) {
+            if (format.name().equals(normalized)) {
+                return format;
+            }
+            names.add(format.name().toLowerCase().replace('_', '-'));
+        }
+
+        throw new IllegalArgumentException("Unknown result format \"" + name.trim() + "\", expected one of: " + names);
+    }
+}
@@ -0,0 +1,15 @@
+package perfecthashing.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/* Destination of the rows PerfectHashingStatistics produces, one sink per table.
+   The first row is the header; closing the sink completes the file */
+public interface ResultSink extends Closeable {
+
+    /* Appends a row of numbers and strings; write failures surface as UncheckedIOException */
+    <T> void setRow(T[] data);
+
+    @Override
+    void close() throws IOException;
+}
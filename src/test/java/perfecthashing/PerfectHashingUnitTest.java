@@ -1,17 +1,63 @@
 package perfecthashing;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.Assert.assertTrue;
+import org.junit.Assume;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
+import perfecthashing.dictionary.DictionaryMetrics;
 import perfecthashing.dictionary.PerfectHashDictionary;
+import perfecthashing.hashing.BuildOptions;
+import perfecthashing.hashing.ConcurrentPerfectLinearHashSet;
+import perfecthashing.hashing.CountingBloomFilter;
+import perfecthashing.hashing.FrozenPerfectHashSet;
+import perfecthashing.hashing.HashFamily;
+import perfecthashing.hashing.HashFunction;
+import perfecthashing.hashing.IPerfectHashSet;
+import perfecthashing.hashing.MappedPerfectHashSet;
+import perfecthashing.hashing.MemoryFootprint;
+import perfecthashing.hashing.OptimisticPerfectHashSet;
+import perfecthashing.hashing.PerfectHashMap;
+import perfecthashing.hashing.PerfectIntHashMap;
 import perfecthashing.hashing.PerfectLinearHashSet;
+import perfecthashing.hashing.PerfectLongHashMap;
 import perfecthashing.hashing.PerfectQuadraticHashSet;
+import perfecthashing.hashing.RehashListener;
+import perfecthashing.hashing.StaticPerfectHashSet;
+import perfecthashing.hashing.XorFilter;
+import perfecthashing.utils.KeyFileReader;
+import perfecthashing.utils.LatencyHistogram;
+import perfecthashing.utils.ResultFormat;
+import perfecthashing.utils.ResultSink;
 
 public class PerfectHashingUnitTest
 {
@@ -917,16 +963,1220 @@ public class PerfectHashingUnitTest
         assertTrue(perfectQuadraticHashSet.getCapacity() > initialCapacity);
     }
 
+    @Test
+    public void testLookupIsAllocationFree() {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        perfectLinearHashSet = new PerfectLinearHashSet();
+        perfectQuadraticHashSet = new PerfectQuadraticHashSet();
+
+        final int numKeys = 1000;
+        final int lookups = 100_000;
+        String[] keys = new String[numKeys];
+        String[] missingKeys = new String[numKeys];
+
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = "key_" + UUID.randomUUID().toString();
+            missingKeys[i] = "missing_" + UUID.randomUUID().toString();
+            perfectLinearHashSet.insert(keys[i]);
+            perfectQuadraticHashSet.insert(keys[i]);
+        }
+
+        // Warm up so that the measured loop runs compiled code
+        for (int i = 0; i < lookups; i++) {
+            perfectLinearHashSet.search(keys[i % numKeys]);
+            perfectLinearHashSet.search(missingKeys[i % numKeys]);
+            perfectQuadraticHashSet.search(keys[i % numKeys]);
+            perfectQuadraticHashSet.search(missingKeys[i % numKeys]);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        int found = 0;
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < lookups; i++) {
+            found += perfectLinearHashSet.search(keys[i % numKeys]) ? 1 : 0;
+            found += perfectLinearHashSet.search(missingKeys[i % numKeys]) ? 1 : 0;
+            found += perfectQuadraticHashSet.search(keys[i % numKeys]) ? 1 : 0;
+            found += perfectQuadraticHashSet.search(missingKeys[i % numKeys]) ? 1 : 0;
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(Thread.currentThread().getStackTrace()[1].getMethodName());
+        System.out.println("Lookups: " + (4L * lookups));
+        System.out.println("Allocated Bytes: " + allocated);
+        System.out.println("--------------------------------------------------------");
+
+        assertTrue(found == 2 * lookups);
+        // Allows for the few bytes the measurement itself may allocate, which is far below one byte per lookup
+        assertTrue(allocated / (4L * lookups) == 0);
+    }
+
+    @Test
+    public void testHashFamilies() {
+        final int numKeys = 2000;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            keys.add("key_" + UUID.randomUUID().toString());
+        }
+
+        for (HashFamily family : HashFamily.values()) {
+            perfectLinearHashSet = new PerfectLinearHashSet(family);
+            perfectQuadraticHashSet = new PerfectQuadraticHashSet(family);
+
+            double linearExecutionTime = measureExecutionTime(() -> {
+                for (String key : keys) {
+                    assertTrue(perfectLinearHashSet.insert(key));
+                }
+            });
+
+            double quadraticExecutionTime = measureExecutionTime(() -> {
+                for (String key : keys.subList(0, numKeys / 10)) {
+                    assertTrue(perfectQuadraticHashSet.insert(key));
+                }
+            });
+
+            System.out.println(Thread.currentThread().getStackTrace()[1].getMethodName() + " (" + family + ")");
+            System.out.println("Linear Execution Time: " + linearExecutionTime + " ms");
+            System.out.println("Linear Total Rehashings: " + perfectLinearHashSet.getTotalRehashingTrials());
+            System.out.println("Quadratic Execution Time: " + quadraticExecutionTime + " ms");
+            System.out.println("Quadratic Total Rehashings: " + perfectQuadraticHashSet.getRehashingTrials());
+            System.out.println("--------------------------------------------------------");
+
+            for (String key : keys) {
+                assertTrue(perfectLinearHashSet.search(key));
+                assertTrue(!perfectLinearHashSet.search(key + "_missing"));
+                assertTrue(perfectLinearHashSet.delete(key));
+            }
+            for (String key : keys.subList(0, numKeys / 10)) {
+                assertTrue(perfectQuadraticHashSet.search(key));
+                assertTrue(perfectQuadraticHashSet.delete(key));
+            }
+
+            assertTrue(perfectLinearHashSet.getSize() == 0);
+            assertTrue(perfectQuadraticHashSet.getSize() == 0);
+        }
+
+        // A misspelled family is refused rather than silently measured as another one
+        assertTrue(HashFamily.forName(" Multiply-Shift ") == HashFamily.MULTIPLY_SHIFT);
+        try {
+            HashFamily.forName("tabluation");
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("tabluation") && e.getMessage().contains("multiply-shift"));
+        }
+    }
+
+    @Test
+    public void testStaticBuildWithDuplicates() {
+        final int numKeys = 20000;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            keys.add("key_" + UUID.randomUUID().toString());
+        }
+        // Every key appears twice in the input list
+        List<String> input = new ArrayList<>(keys);
+        input.addAll(keys);
+
+        double linearExecutionTime = measureExecutionTime(() -> {
+            perfectLinearHashSet = new PerfectLinearHashSet(input);
+        });
+
+        System.out.println(Thread.currentThread().getStackTrace()[1].getMethodName());
+        System.out.println("Total Keys: " + input.size() + "\n");
+        System.out.println("Execution Time: " + linearExecutionTime + " ms");
+        System.out.println("Total Keys Inserted: " + perfectLinearHashSet.getSize());
+        System.out.println("Top-Level Rehashings: " + perfectLinearHashSet.getTopLevelRehashingTrials());
+        System.out.println("Total Rehashings: " + perfectLinearHashSet.getTotalRehashingTrials());
+        System.out.println("Total Inner Buckets: " + perfectLinearHashSet.getInnerBucketsTotalCapacity());
+        System.out.println("--------------------------------------------------------");
+
+        assertTrue(perfectLinearHashSet.getSize() == numKeys);
+        // Each bucket is built at n_i^2 slots and the top level keeps the sum of n_i^2 within 4n
+        assertTrue(perfectLinearHashSet.getInnerBucketsTotalCapacity() <= 4L * numKeys);
+
+        for (String key : keys) {
+            assertTrue(perfectLinearHashSet.search(key));
+            assertTrue(!perfectLinearHashSet.insert(key));
+        }
+
+        // Growing past the initial capacity goes through the same static rebuild
+        for (int i = 0; i < numKeys; i++) {
+            assertTrue(perfectLinearHashSet.insert("extra_" + i));
+        }
+        assertTrue(perfectLinearHashSet.getSize() == 2 * numKeys);
+        for (String key : keys) {
+            assertTrue(perfectLinearHashSet.search(key));
+        }
+    }
+
+    @Test
+    public void testParallelBuildIsReproducible() {
+        final int numKeys = 50000;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            keys.add("key_" + i);
+        }
+
+        PerfectLinearHashSet sequentialHashSet = new PerfectLinearHashSet(keys, new BuildOptions().setSeed(42));
+
+        double parallelExecutionTime = measureExecutionTime(() -> {
+            perfectLinearHashSet = new PerfectLinearHashSet(keys, new BuildOptions().setSeed(42).setParallelism(4));
+        });
+
+        System.out.println(Thread.currentThread().getStackTrace()[1].getMethodName());
+        System.out.println("Parallel Execution Time: " + parallelExecutionTime + " ms");
+        System.out.println("Total Rehashings: " + perfectLinearHashSet.getTotalRehashingTrials());
+        System.out.println("--------------------------------------------------------");
+
+        assertTrue(perfectLinearHashSet.getSize() == numKeys);
+        assertTrue(perfectLinearHashSet.getTotalRehashingTrials() == sequentialHashSet.getTotalRehashingTrials());
+        assertTrue(perfectLinearHashSet.getInnerBucketsTotalCapacity() == sequentialHashSet.getInnerBucketsTotalCapacity());
+
+        for (String key : keys) {
+            assertTrue(perfectLinearHashSet.search(key));
+        }
+    }
+
+    @Test
+    public void testStaticMinimalPerfectHashing() {
+        final int numKeys = 100000;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            keys.add("key_" + i);
+        }
+
+        StaticPerfectHashSet[] staticHashSets = new StaticPerfectHashSet[1];
+        double staticExecutionTime = measureExecutionTime(() -> {
+            staticHashSets[0] = new StaticPerfectHashSet(keys);
+        });
+        StaticPerfectHashSet staticHashSet = staticHashSets[0];
+        StaticPerfectHashSet fingerprintHashSet = new StaticPerfectHashSet(keys, StaticPerfectHashSet.Verification.FINGERPRINTS);
+
+        System.out.println(Thread.currentThread().getStackTrace()[1].getMethodName());
+        System.out.println("Total Keys: " + keys.size() + "\n");
+        System.out.println("Execution Time: " + staticExecutionTime + " ms");
+        System.out.println("Build Attempts: " + staticHashSet.getBuildAttempts());
+        System.out.println("Bits Per Key: " + staticHashSet.getBitsPerKey());
+        System.out.println("--------------------------------------------------------");
+
+        // Every key gets its own index in [0, n)
+        boolean[] used = new boolean[numKeys];
+        for (String key : keys) {
+            int index = staticHashSet.indexOf(key);
+            assertTrue(index >= 0 && index < numKeys && !used[index]);
+            used[index] = true;
+            assertTrue(fingerprintHashSet.search(key));
+        }
+
+        for (int i = 0; i < numKeys; i++) {
+            assertTrue(!staticHashSet.search("missing_" + i));
+        }
+
+        assertTrue(staticHashSet.getBitsPerKey() < 8);
+        assertTrue(new StaticPerfectHashSet(Arrays.asList("apple", "apple", "fig")).getSize() == 2);
+        assertTrue(!new StaticPerfectHashSet(new ArrayList<>()).search("apple"));
+    }
+
+    @Test(timeout = 30000)
+    public void testClusteredKeys() {
+        // Keys that differ only at their start used to share most of the low fingerprint bits a small matrix function reads
+        List<String> keys = new ArrayList<>();
+        Set<Long> fingerprints = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            keys.add(i + "ing");
+            fingerprints.add(HashFunction.fingerprint(i + "ing") & 0xFFFFFFFFL);
+        }
+        assertTrue(fingerprints.size() > 4990);
+
+        PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet();
+        for (String key : keys) {
+            assertTrue(linearHashSet.insert(key));
+        }
+        assertTrue(linearHashSet.searchAll(keys).cardinality() == keys.size());
+    }
+
+    @Test
+    public void testSaveAndMappedLoad() throws IOException {
+        final int numKeys = 5000;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            keys.add("key_" + i + "_\u00e9\u4e2d\ud83d\ude00");
+        }
+
+        for (HashFamily family : HashFamily.values()) {
+            perfectLinearHashSet = new PerfectLinearHashSet(keys, family);
+            perfectQuadraticHashSet = new PerfectQuadraticHashSet(keys.subList(0, 100), family);
+
+            Path linearFile = Files.createTempFile("linear", ".phs");
+            Path quadraticFile = Files.createTempFile("quadratic", ".phs");
+            try {
+                MappedPerfectHashSet.save(perfectLinearHashSet, linearFile);
+                MappedPerfectHashSet.save(perfectQuadraticHashSet, quadraticFile);
+
+                MappedPerfectHashSet mappedLinear = MappedPerfectHashSet.load(linearFile);
+                MappedPerfectHashSet mappedQuadratic = MappedPerfectHashSet.load(quadraticFile);
+
+                assertTrue(mappedLinear.getSize() == numKeys);
+                for (String key : keys) {
+                    assertTrue(mappedLinear.search(key));
+                    assertTrue(!mappedLinear.search(key + "x"));
+                    assertTrue(!mappedLinear.search(key.substring(0, key.length() - 2)));
+                }
+                for (String key : keys.subList(0, 100)) {
+                    assertTrue(mappedQuadratic.search(key));
+                }
+                assertTrue(!mappedQuadratic.search(keys.get(100)));
+
+                mappedLinear.verify();
+
+                // A flipped data byte loads, as loading reads only the header, and is caught by verify
+                byte[] bytes = Files.readAllBytes(linearFile);
+                bytes[bytes.length / 2] ^= 1;
+                Files.write(linearFile, bytes);
+                boolean rejected = false;
+                try {
+                    MappedPerfectHashSet.load(linearFile).verify();
+                } catch (IOException e) {
+                    rejected = true;
+                }
+                assertTrue(rejected);
+
+                // A flipped header byte is caught on load
+                bytes[bytes.length / 2] ^= 1;
+                bytes[3 * Integer.BYTES] ^= 1;
+                Files.write(linearFile, bytes);
+                rejected = false;
+                try {
+                    MappedPerfectHashSet.load(linearFile);
+                } catch (IOException e) {
+                    rejected = true;
+                }
+                assertTrue(rejected);
+
+                // So is an unknown hash family behind a valid header checksum
+                bytes = Files.readAllBytes(quadraticFile);
+                ByteBuffer header = ByteBuffer.wrap(bytes);
+                header.putInt(2 * Integer.BYTES, HashFamily.values().length);
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, 9 * Integer.BYTES);
+                header.putInt(9 * Integer.BYTES, (int) crc.getValue());
+                Files.write(quadraticFile, bytes);
+                rejected = false;
+                try {
+                    MappedPerfectHashSet.load(quadraticFile);
+                } catch (IOException e) {
+                    rejected = true;
+                }
+                assertTrue(rejected);
+            } finally {
+                Files.deleteIfExists(linearFile);
+                Files.deleteIfExists(quadraticFile);
+            }
+        }
+
+        // Saving over a mapped file replaces it without truncating the mapping, and leaves no temporary file behind
+        Path directory = Files.createTempDirectory("mapped");
+        Path replaced = directory.resolve("set.phs");
+        try {
+            MappedPerfectHashSet.save(new PerfectLinearHashSet(keys), replaced);
+            MappedPerfectHashSet live = MappedPerfectHashSet.load(replaced);
+            MappedPerfectHashSet.save(new PerfectLinearHashSet(Arrays.asList("other")), replaced);
+            for (String key : keys) {
+                assertTrue(live.search(key));
+            }
+            assertTrue(MappedPerfectHashSet.load(replaced).search("other") && !MappedPerfectHashSet.load(replaced).search(keys.get(0)));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertTrue(files.count() == 1);
+            }
+        } finally {
+            Files.deleteIfExists(replaced);
+            Files.deleteIfExists(directory);
+        }
+
+        // An unpaired surrogate has no UTF-8 bytes: it matches no stored key, and is refused when saving
+        Path file = Files.createTempFile("surrogate", ".phs");
+        try {
+            MappedPerfectHashSet.save(new PerfectLinearHashSet(Arrays.asList("?", "plain")), file);
+            MappedPerfectHashSet mapped = MappedPerfectHashSet.load(file);
+            assertTrue(mapped.search("?") && !mapped.search("\ud800") && !mapped.search("\udc00"));
+
+            boolean rejected = false;
+            try {
+                MappedPerfectHashSet.save(new PerfectLinearHashSet(Arrays.asList("\ud800", "plain")), file);
+            } catch (IOException e) {
+                rejected = true;
+            }
+            assertTrue(rejected);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws InterruptedException {
+        final int stableKeys = 2000;
+        final int churnKeys = 20000;
+        final int readers = 4;
+        final int writers = 2;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < stableKeys; i++) {
+            keys.add("stable_" + i);
+        }
+
+        perfectHashDictionary = new PerfectHashDictionary("linear", keys, new BuildOptions().setThreadSafe(true));
+
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final CountDownLatch writersDone = new CountDownLatch(writers);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                int i = 0;
+                while (writersDone.getCount() > 0) {
+                    // Stable keys must stay visible and absent keys invisible through every resize
+                    if (!perfectHashDictionary.search("stable_" + (i % stableKeys))
+                            || perfectHashDictionary.search("absent_" + (i % stableKeys))) {
+                        failed.set(true);
+                    }
+                    ++i;
+                }
+            }));
+        }
+
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            threads.add(new Thread(() -> {
+                for (int i = writer; i < churnKeys; i += writers) {
+                    if (!perfectHashDictionary.insert("churn_" + i)) {
+                        failed.set(true);
+                    }
+                }
+                for (int i = writer; i < churnKeys; i += 2 * writers) {
+                    if (!perfectHashDictionary.delete("churn_" + i)) {
+                        failed.set(true);
+                    }
+                }
+                writersDone.countDown();
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(!failed.get());
+        for (int i = 0; i < churnKeys; i++) {
+            assertTrue(perfectHashDictionary.search("churn_" + i) == (i % (2 * writers) >= writers));
+        }
+    }
+
+
+    @Test
+    public void testStripedConcurrentWriters() throws InterruptedException {
+        final int producers = 8;
+        final int keysPerProducer = 5000;
+
+        final ConcurrentPerfectLinearHashSet hashSet = new ConcurrentPerfectLinearHashSet(new BuildOptions().setSeed(11));
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final CountDownLatch inserted = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < keysPerProducer; i++) {
+                    // Every producer also retries a key of its neighbour, which only one of them may add
+                    hashSet.insert("producer_" + i + "_" + producer);
+                    hashSet.insert("producer_" + i + "_" + ((producer + 1) % producers));
+                    if (!hashSet.search("producer_" + i + "_" + producer)) {
+                        failed.set(true);
+                    }
+                }
+
+                // Deletes start once no neighbour can add the keys back
+                inserted.countDown();
+                try {
+                    inserted.await();
+                } catch (InterruptedException e) {
+                    failed.set(true);
+                    return;
+                }
+
+                for (int i = 0; i < keysPerProducer; i += 2) {
+                    if (!hashSet.delete("producer_" + i + "_" + producer)) {
+                        failed.set(true);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(!failed.get());
+        assertTrue(hashSet.getSize() == producers * keysPerProducer / 2);
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < keysPerProducer; i++) {
+                assertTrue(hashSet.search("producer_" + i + "_" + p) == (i % 2 == 1));
+            }
+        }
+    }
+
+
+    @Test
+    public void testThreadSafeDictionarySnapshots() throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1300; i++) {
+            keys.add("snapshot_" + i);
+        }
+
+        // Keys inserted through the wrapper are counted by freeze, save and the membership filter
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", keys.subList(0, 1000),
+                new BuildOptions().setThreadSafe(true).setMembershipFilter(true));
+        for (String key : keys.subList(1000, 1300)) {
+            assertTrue(dictionary.insert(key));
+        }
+        dictionary.freeze();
+        assertTrue(dictionary.memoryFootprint().getKeyBytes() > 0 && dictionary.getMetrics().getSize() == 1300);
+        assertTrue(dictionary.searchAll(keys).cardinality() == 1300);
+
+        PerfectHashDictionary empty = new PerfectHashDictionary("linear", new ArrayList<>(), new BuildOptions().setThreadSafe(true));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(empty.insert("k" + i));
+        }
+        Path file = Files.createTempFile("snapshot", ".phs");
+        try {
+            assertTrue(empty.save(file.toString()));
+            PerfectHashDictionary loaded = PerfectHashDictionary.load(file.toString());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(loaded.search("k" + i));
+            }
+            assertTrue(loaded.getMetrics().getSize() == 4);
+
+            // Frozen, static and mapped dictionaries cannot be saved, and report it like a failed write
+            assertTrue(!dictionary.save(file.toString()) && !loaded.save(file.toString()));
+            assertTrue(!new PerfectHashDictionary("static", keys).save(file.toString()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    public void testBatchOperations() {
+        final int keyCount = 500;
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(i + "_batch");
+        }
+
+        // Every other probe is absent, and the batch is longer than one pipelined block
+        String[] probes = new String[2 * keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            probes[2 * i] = keys.get(i);
+            probes[2 * i + 1] = i + "_absent";
+        }
+
+        List<IPerfectHashSet> hashSets = Arrays.asList(
+                new PerfectLinearHashSet(keys),
+                new PerfectQuadraticHashSet(keys),
+                new StaticPerfectHashSet(keys),
+                new ConcurrentPerfectLinearHashSet(keys, new BuildOptions()),
+                new OptimisticPerfectHashSet(new PerfectLinearHashSet(keys)));
+
+        for (IPerfectHashSet hashSet : hashSets) {
+            BitSet found = hashSet.searchAll(probes);
+            for (int i = 0; i < probes.length; i++) {
+                assertTrue(found.get(i) == (i % 2 == 0));
+                assertTrue(found.get(i) == hashSet.search(probes[i]));
+            }
+            assertTrue(hashSet.searchAll(new String[0]).isEmpty());
+        }
+
+        // The wrappers list the keys of the set they wrap
+        for (IPerfectHashSet hashSet : Arrays.asList(hashSets.get(3), hashSets.get(4))) {
+            Set<String> enumerated = new HashSet<>();
+            hashSet.forEachKey(enumerated::add);
+            assertTrue(enumerated.equals(new HashSet<>(keys)));
+        }
+
+        for (IPerfectHashSet hashSet : Arrays.asList(new PerfectLinearHashSet(), hashSets.get(1), hashSets.get(3), hashSets.get(4))) {
+            // A key repeated within one batch is only added by its first occurrence
+            String[] fresh = { "1_fresh", "2_fresh", "1_fresh", keys.get(0) };
+            boolean present = hashSet.search(keys.get(0));
+            BitSet inserted = hashSet.insertAll(fresh);
+            assertTrue(inserted.get(0) && inserted.get(1) && !inserted.get(2));
+            assertTrue(inserted.get(3) == !present);
+
+            BitSet deleted = hashSet.deleteAll(Arrays.asList("1_fresh", "1_fresh", "3_fresh"));
+            assertTrue(deleted.get(0) && !deleted.get(1) && !deleted.get(2));
+            assertTrue(!hashSet.search("1_fresh") && hashSet.search("2_fresh"));
+        }
+
+        // Inserting enough keys in one batch to force several top-level resizes
+        PerfectLinearHashSet growing = new PerfectLinearHashSet();
+        assertTrue(growing.insertAll(keys).cardinality() == keyCount);
+        assertTrue(growing.searchAll(keys).cardinality() == keyCount);
+        assertTrue(growing.getSize() == keyCount);
+    }
+
+
+    @Test
+    public void testStreamingBatchFiles() throws IOException {
+        Path file = Files.createTempFile("keys", ".txt");
+        try {
+            String longKey = "long_" + String.join("", Collections.nCopies(40, "x"));
+            String content = "  alpha\r\n\tbeta \n\n   \r\n\u00e9t\u00e9\ngamma\r" + longKey + "\nalpha\ndelta";
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+            // A buffer smaller than some lines forces refills mid-line and one growth
+            List<String> read = new ArrayList<>();
+            try (KeyFileReader reader = new KeyFileReader(file, 8)) {
+                String key;
+                while ((key = reader.readKey()) != null) {
+                    read.add(key);
+                }
+                assertTrue(reader.getPosition() == reader.getFileSize());
+            }
+            assertTrue(read.equals(Arrays.asList("alpha", "beta", "\u00e9t\u00e9", "gamma", longKey, "alpha", "delta")));
+
+            perfectHashDictionary = new PerfectHashDictionary("linear", new ArrayList<>());
+            List<Long> progress = new ArrayList<>();
+            perfectHashDictionary.setProgressListener((keys, bytesRead, totalBytes) -> progress.add(keys), 3);
+
+            int[] inserted = perfectHashDictionary.batchInsert(file.toString());
+            assertTrue(inserted[0] == 6 && inserted[1] == 1);
+            assertTrue(progress.equals(Arrays.asList(3L, 6L, 7L)));
+            assertTrue(perfectHashDictionary.search("\u00e9t\u00e9") && perfectHashDictionary.search(longKey));
+
+            int[] deleted = perfectHashDictionary.batchDelete(file.toString());
+            assertTrue(deleted[0] == 6 && deleted[1] == 1);
+            assertTrue(!perfectHashDictionary.search("alpha"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    public void testParallelBatchInsertMatchesSequential() throws IOException {
+        Path file = Files.createTempFile("keys", ".txt");
+        try {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 30000; i++) {
+                // Repeated keys, blank lines and both terminators spread over every chunk
+                content.append("load_").append(i % 7000).append((i % 3 == 0) ? "\r\n" : "\n");
+                if (i % 101 == 0) {
+                    content.append("   \n");
+                }
+            }
+            Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+            long[] boundaries = KeyFileReader.splitLines(file, 16);
+            for (int k = 1; k < boundaries.length; k++) {
+                assertTrue(boundaries[k] >= boundaries[k - 1]);
+            }
+
+            List<String> initialKeys = Arrays.asList("load_1", "load_2", "initial");
+            PerfectHashDictionary sequential = new PerfectHashDictionary("linear", initialKeys);
+            PerfectHashDictionary parallel = new PerfectHashDictionary("linear", initialKeys);
 
+            int[] expected = sequential.batchInsert(file.toString());
+            int[] actual = parallel.parallelBatchInsert(file.toString(), 4);
+            assertTrue(expected[0] == 6998 && expected[1] == 23002);
+            assertTrue(Arrays.equals(expected, actual));
 
+            for (int i = 0; i < 7000; i++) {
+                assertTrue(parallel.search("load_" + i));
+            }
+            assertTrue(parallel.search("initial") && !parallel.search("load_7000"));
 
+            // The set keeps working with single-key updates after the parallel load
+            assertTrue(parallel.insert("after") && parallel.delete("load_1") && !parallel.search("load_1"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
 
 
+    @Test
+    public void testReserveAvoidsRepeatedResizes() throws IOException {
+        final int keyCount = 20000;
 
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < keyCount; i++) {
+            keys.add("reserve_" + i);
+        }
 
+        // One rebuild at reserve time, then no top-level growth while the keys go in
+        PerfectLinearHashSet linear = new PerfectLinearHashSet();
+        linear.insert("early");
+        linear.reserve(keyCount + 1);
+        final int reservedCapacity = linear.getTotalCapacity();
+        assertTrue(reservedCapacity >= keyCount + 1 && linear.search("early"));
+        for (String key : keys) {
+            assertTrue(linear.insert(key));
+        }
+        assertTrue(linear.getTotalCapacity() == reservedCapacity);
 
+        // Reserving less than the current capacity is a no-op
+        linear.reserve(10);
+        assertTrue(linear.getTotalCapacity() == reservedCapacity && linear.getSize() == keyCount + 1);
 
+        PerfectLinearHashSet presized = new PerfectLinearHashSet(new BuildOptions().setExpectedKeys(keyCount));
+        assertTrue(presized.getTotalCapacity() >= keyCount);
 
+        PerfectQuadraticHashSet quadratic = new PerfectQuadraticHashSet();
+        quadratic.insert("first");
+        quadratic.reserve(100);
+        final int quadraticCapacity = quadratic.getCapacity();
+        for (int i = 0; i < 99; i++) {
+            quadratic.insert(keys.get(i));
+        }
+        assertTrue(quadratic.getCapacity() == quadraticCapacity && quadratic.search("first"));
 
+        try {
+            quadratic.reserve(1 << 20);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            assertTrue(quadratic.getCapacity() == quadraticCapacity);
+        }
 
-}
\ No newline at end of file
+        // batchInsert pre-sizes a linear dictionary from the file's line count estimate
+        Path file = Files.createTempFile("keys", ".txt");
+        try {
+            Files.write(file, keys, StandardCharsets.UTF_8);
+            assertTrue(KeyFileReader.estimateLineCount(file) >= keyCount * 9 / 10);
+
+            perfectHashDictionary = new PerfectHashDictionary("linear", new ArrayList<>(), new BuildOptions().setExpectedKeys(10));
+            int[] inserted = perfectHashDictionary.batchInsert(file.toString());
+            assertTrue(inserted[0] == keyCount && inserted[1] == 0);
+            assertTrue(perfectHashDictionary.search("reserve_" + (keyCount - 1)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    public void testResultSinks() throws IOException {
+        Path directory = Files.createTempDirectory("results");
+        String base = directory.resolve("Table").toString();
+        try {
+            ResultSink csv = ResultFormat.CSV.open(base);
+            csv.setRow(new String[]{"Key Count", "Note"});
+            csv.setRow(new Object[]{10.0, "a, \"quoted\" note"});
+            // Rows are on disk before the sink is closed
+            assertTrue(Files.readAllLines(Paths.get(base + ".csv")).size() == 2);
+            csv.close();
+            assertTrue(Files.readAllLines(Paths.get(base + ".csv"))
+                    .equals(Arrays.asList("Key Count,Note", "10.0,\"a, \"\"quoted\"\" note\"")));
+
+            ResultSink jsonLines = ResultFormat.JSON_LINES.open(base);
+            jsonLines.setRow(new String[]{"Key Count", "Time", "Note"});
+            jsonLines.setRow(new Object[]{10.0, Double.NaN, "say \"hi\"\n"});
+            jsonLines.setRow(new Object[]{20.0, 1.5, "ok"});
+            jsonLines.close();
+            assertTrue(Files.readAllLines(Paths.get(base + ".jsonl")).equals(Arrays.asList(
+                    "{\"Key Count\":10.0,\"Time\":null,\"Note\":\"say \\\"hi\\\"\\u000a\"}",
+                    "{\"Key Count\":20.0,\"Time\":1.5,\"Note\":\"ok\"}")));
+
+            assertTrue(ResultFormat.forName("streaming-xlsx") == ResultFormat.STREAMING_XLSX);
+            try {
+                ResultFormat.forName("xslx");
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("xslx") && e.getMessage().contains("json-lines"));
+            }
+        } finally {
+            Files.deleteIfExists(Paths.get(base + ".csv"));
+            Files.deleteIfExists(Paths.get(base + ".jsonl"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertTrue(histogram.getValueAtPercentile(99) == 0 && histogram.getCount() == 0);
+
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        // One stall far above everything else, as a rehash would cause
+        histogram.record(5000000000L);
+
+        assertTrue(histogram.getCount() == 100001 && histogram.getMax() == 5000000000L);
+        for (double percentile : new double[]{50, 99, 99.9}) {
+            double exact = percentile / 100 * 100001;
+            double reported = histogram.getValueAtPercentile(percentile);
+            // Within the bucket resolution of 1/128
+            assertTrue(reported >= exact - 1 && reported <= exact * (1 + 1.0 / 128) + 1);
+        }
+        assertTrue(histogram.getValueAtPercentile(100) == 5000000000L);
+
+        // Small values are exact
+        histogram.reset();
+        histogram.record(3);
+        histogram.record(-5);
+        assertTrue(histogram.getValueAtPercentile(50) == 0 && histogram.getValueAtPercentile(100) == 3);
+    }
+
+
+    @Test
+    public void testDictionaryMetrics() throws Exception {
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", new ArrayList<>());
+        for (int i = 0; i < 2000; i++) {
+            dictionary.insert("metric_" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            dictionary.search("metric_" + (i * 3));
+        }
+        dictionary.delete("metric_0");
+
+        DictionaryMetrics metrics = dictionary.getMetrics();
+        assertTrue(metrics.getInsertCount() == 2000 && metrics.getDeleteCount() == 1);
+        assertTrue(metrics.getSearchHits() == 667 && metrics.getSearchMisses() == 333);
+        assertTrue(metrics.getResizeCount() > 0 && metrics.getResizeMillis() > 0);
+        assertTrue(metrics.getSize() == 1999 && metrics.getSlotsPerKey() >= 1);
+
+        // Collisions in a quadratic table are rehashes
+        PerfectHashDictionary quadratic = new PerfectHashDictionary("quadratic", new ArrayList<>());
+        for (int i = 0; i < 200; i++) {
+            quadratic.insert("metric_" + i);
+        }
+        assertTrue(quadratic.getMetrics().getRehashCount() > 0 && quadratic.getMetrics().getRehashTrials() >= quadratic.getMetrics().getRehashCount());
+
+        // Redraws of the top-level function are reported on their own; this seed draws a skewed function once
+        long[] topLevelTrials = new long[1];
+        PerfectLinearHashSet linear = new PerfectLinearHashSet(new BuildOptions().setSeed(3794));
+        linear.setRehashListener(new RehashListener() {
+            @Override
+            public void onRehash(long trials, long nanos) {
+            }
+
+            @Override
+            public void onTopLevelRehash(long trials, long nanos) {
+                topLevelTrials[0] += trials;
+            }
+        });
+        for (int i = 0; i < 12; i++) {
+            linear.insert("metric_" + i);
+        }
+        assertTrue(topLevelTrials[0] > 0 && topLevelTrials[0] == linear.getTopLevelRehashingTrials());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("perfecthashing:type=PerfectHashDictionary,name=\"metrics test\"");
+        assertTrue(dictionary.registerMBean("metrics test"));
+        assertTrue(server.getAttribute(name, "Size").equals(1999));
+        assertTrue(Math.abs((Double) server.getAttribute(name, "HitRatio") - 0.667) < 1e-9);
+
+        dictionary.unregisterMBean();
+        assertTrue(!server.isRegistered(name));
+
+        metrics.reset();
+        assertTrue(metrics.getInsertCount() == 0 && Double.isNaN(metrics.getHitRatio()));
+    }
+
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path file = Files.createTempFile("perfecthashing", ".jfr");
+        try (Recording recording = new Recording()) {
+            // Off by default
+            for (EventType type : FlightRecorder.getFlightRecorder().getEventTypes()) {
+                if (type.getName().startsWith("perfecthashing.")) {
+                    assertTrue(!type.isEnabled());
+                }
+            }
+
+            recording.enable("perfecthashing.Rehash");
+            recording.enable("perfecthashing.Resize");
+            recording.start();
+
+            PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet();
+            PerfectQuadraticHashSet quadraticHashSet = new PerfectQuadraticHashSet();
+            for (int i = 0; i < 500; i++) {
+                linearHashSet.insert("event_" + i);
+                quadraticHashSet.insert("event_" + i);
+            }
+
+            recording.stop();
+            recording.dump(file);
+
+            boolean topLevelResize = false;
+            boolean rehash = false;
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                String name = event.getEventType().getName();
+                if (name.equals("perfecthashing.Resize") && event.getBoolean("topLevel")) {
+                    topLevelResize |= event.getInt("newCapacity") > event.getInt("oldCapacity");
+                } else if (name.equals("perfecthashing.Rehash") && !event.getBoolean("topLevel")) {
+                    rehash |= event.getLong("trials") > 0 && event.getInt("keys") <= event.getInt("capacity");
+                }
+            }
+            assertTrue(topLevelResize && rehash);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    public void testMemoryFootprint() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("memory_" + i);
+        }
+
+        PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet();
+        PerfectQuadraticHashSet quadraticHashSet = new PerfectQuadraticHashSet();
+        linearHashSet.insertAll(keys);
+        quadraticHashSet.insertAll(keys);
+
+        // A 24-byte String each, with a 24-byte array for the 8 Latin-1 bytes of "memory_0" to "memory_9"
+        // and a 32-byte one for the 9 or 10 bytes of the others
+        MemoryFootprint linear = linearHashSet.memoryFootprint();
+        MemoryFootprint quadratic = quadraticHashSet.memoryFootprint();
+        assertTrue(linear.getKeyBytes() == 10 * 48 + 990 * 56 && quadratic.getKeyBytes() == linear.getKeyBytes());
+        assertTrue(quadratic.getSlotBytes() >= 4L * quadraticHashSet.getCapacity());
+        assertTrue(linear.getSlotBytes() >= 4L * linearHashSet.getInnerBucketsTotalCapacity());
+        assertTrue(linear.getHashFunctionBytes() > 0 && linear.getHeaderBytes() > 0);
+        assertTrue(linear.getTotalBytes() < quadratic.getTotalBytes());
+        assertTrue(linear.getTotalBytes() == linear.getKeyBytes() + linear.getSlotBytes() + linear.getHashFunctionBytes() + linear.getHeaderBytes());
+
+        // Wrappers add their own headers only
+        for (IPerfectHashSet wrapper : Arrays.asList(new ConcurrentPerfectLinearHashSet(linearHashSet), new OptimisticPerfectHashSet(linearHashSet))) {
+            MemoryFootprint wrapped = wrapper.memoryFootprint();
+            assertTrue(wrapped.getKeyBytes() == linear.getKeyBytes() && wrapped.getSlotBytes() == linear.getSlotBytes());
+            assertTrue(wrapped.getHeaderBytes() > linear.getHeaderBytes());
+        }
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", keys, new BuildOptions().setThreadSafe(true));
+        assertTrue(dictionary.memoryFootprint().getKeyBytes() == linear.getKeyBytes());
+
+        MemoryFootprint staticFootprint = new StaticPerfectHashSet(keys).memoryFootprint();
+        assertTrue(staticFootprint.getKeyBytes() == linear.getKeyBytes() && staticFootprint.getBytesPerKey(1000) < linear.getBytesPerKey(1000));
+    }
+
+
+    @Test
+    public void testSeededHashFamily() throws IOException {
+        assertTrue(HashFamily.forName("seeded") == HashFamily.SEEDED);
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("seeded_" + i);
+        }
+
+        PerfectLinearHashSet seeded = new PerfectLinearHashSet(HashFamily.SEEDED);
+        PerfectQuadraticHashSet seededQuadratic = new PerfectQuadraticHashSet(HashFamily.SEEDED);
+        seeded.insertAll(keys);
+        seededQuadratic.insertAll(keys.subList(0, 500));
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(seeded.search(keys.get(i)) && !seeded.search("absent_" + i));
+        }
+        for (int i = 0; i < 500; i++) {
+            assertTrue(seededQuadratic.search(keys.get(i)) && !seededQuadratic.search(keys.get(i + 500)));
+        }
+
+        // Buckets keep a seed instead of a function object: only the top-level function is counted
+        PerfectLinearHashSet matrix = new PerfectLinearHashSet(HashFamily.MATRIX);
+        matrix.insertAll(keys);
+        assertTrue(seeded.memoryFootprint().getHashFunctionBytes() < 100);
+        assertTrue(seeded.memoryFootprint().getTotalBytes() < matrix.memoryFootprint().getTotalBytes());
+
+        // Seeded sets survive a save and load
+        Path file = Files.createTempFile("seeded", ".phs");
+        try {
+            MappedPerfectHashSet.save(seeded, file);
+            MappedPerfectHashSet mapped = MappedPerfectHashSet.load(file);
+            assertTrue(mapped.getHashFamily() == HashFamily.SEEDED && mapped.getSize() == keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                assertTrue(mapped.search(keys.get(i)) && !mapped.search("absent_" + i));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    public void testFrozenLayout() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("frozen_" + i);
+        }
+
+        PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet();
+        linearHashSet.insertAll(keys);
+        for (int i = 0; i < keys.size(); i += 3) {
+            linearHashSet.delete(keys.get(i));
+        }
+
+        FrozenPerfectHashSet frozen = linearHashSet.freeze();
+        assertTrue(frozen.getSize() == linearHashSet.getSize());
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(frozen.search(keys.get(i)) == (i % 3 != 0));
+            assertTrue(!frozen.search("absent_" + i));
+        }
+        assertTrue(frozen.searchAll(keys).cardinality() == frozen.getSize());
+
+        // Buckets are rebuilt at k^2 slots, no more than the linear set holds
+        assertTrue(frozen.getSlotCount() <= linearHashSet.getInnerBucketsTotalCapacity());
+        assertTrue(frozen.memoryFootprint().getTotalBytes() < linearHashSet.memoryFootprint().getTotalBytes());
+
+        // The linear set is left as it was
+        assertTrue(linearHashSet.insert(keys.get(0)) && linearHashSet.search(keys.get(0)) && !frozen.search(keys.get(0)));
+
+        try {
+            frozen.insert("frozen_new");
+            assertTrue(false);
+        } catch (UnsupportedOperationException expected) {
+            assertTrue(!frozen.search("frozen_new"));
+        }
+
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", keys, new BuildOptions().setThreadSafe(true));
+        dictionary.freeze();
+        assertTrue(dictionary.searchAll(keys).cardinality() == keys.size() && !dictionary.search("absent_0"));
+        try {
+            dictionary.delete(keys.get(0));
+            assertTrue(false);
+        } catch (UnsupportedOperationException expected) {
+            assertTrue(dictionary.search(keys.get(0)));
+        }
+
+        // The frozen size counts the keys placed, not the counter of the source set, which lags behind its concurrent wrapper
+        PerfectLinearHashSet wrapped = new PerfectLinearHashSet(keys.subList(0, 1000), new BuildOptions());
+        ConcurrentPerfectLinearHashSet wrapper = new ConcurrentPerfectLinearHashSet(wrapped);
+        for (String key : keys.subList(1000, 1100)) {
+            wrapper.insert(key);
+        }
+        assertTrue(wrapped.freeze().getSize() == 1100);
+
+        // Empty sets freeze too
+        assertTrue(!new PerfectLinearHashSet().freeze().search("frozen_0"));
+    }
+
+
+    @Test
+    public void testByteArenaKeys() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("arena_" + i);
+        }
+        // Two- and three-byte UTF-8 sequences and a surrogate pair
+        keys.add("arena_caf\u00e9");
+        keys.add("arena_\u65e5\u672c");
+        keys.add("arena_\ud83d\ude00");
+        keys.add("");
+
+        PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet(keys, new BuildOptions());
+        FrozenPerfectHashSet strings = linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.STRINGS);
+        FrozenPerfectHashSet arena = linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA);
+        assertTrue(arena.getKeyStorage() == FrozenPerfectHashSet.KeyStorage.ARENA);
+        assertTrue(arena.getSize() == keys.size() && arena.getSlotCount() == strings.getSlotCount());
+
+        assertTrue(arena.searchAll(keys).cardinality() == keys.size());
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(!arena.search("absent_" + i));
+            // Same bytes up to the last one, and one byte longer
+            assertTrue(!arena.search("arena_" + i + "x") && !arena.search("arena_" + (i + 20000)));
+        }
+        assertTrue(!arena.search("arena_cafe") && !arena.search("arena_caf\u00e8") && !arena.search("arena_\u65e5"));
+
+        // One byte array in place of a String and its own byte array per key
+        MemoryFootprint stringBytes = strings.memoryFootprint();
+        MemoryFootprint arenaBytes = arena.memoryFootprint();
+        assertTrue(arenaBytes.getKeyBytes() + arenaBytes.getSlotBytes() < (stringBytes.getKeyBytes() + stringBytes.getSlotBytes()) / 2);
+
+        // The empty key has no bytes of its own
+        linearHashSet.delete("");
+        assertTrue(!linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA).search(""));
+
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", keys, new BuildOptions());
+        dictionary.freeze(FrozenPerfectHashSet.KeyStorage.ARENA);
+        assertTrue(dictionary.searchAll(keys).cardinality() == keys.size() && !dictionary.search("absent_0"));
+
+        // String.getBytes would store an unpaired surrogate as '?'
+        linearHashSet.insert("?");
+        assertTrue(linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA).search("?"));
+        assertTrue(!linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA).search("\ud800"));
+        linearHashSet.insert("\ud800");
+        try {
+            linearHashSet.freeze(FrozenPerfectHashSet.KeyStorage.ARENA);
+            assertTrue(false);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+
+    @Test
+    public void testFingerprintTags() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add("tagged_" + i);
+        }
+
+        PerfectQuadraticHashSet quadraticHashSet = new PerfectQuadraticHashSet(keys.subList(0, 300));
+        PerfectLinearHashSet linearHashSet = new PerfectLinearHashSet();
+        linearHashSet.insertAll(keys.subList(0, 1000));
+
+        // Misses probe the same slots as hits, so only their tags or keys tell them apart
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(linearHashSet.search(keys.get(i)) && !linearHashSet.search(keys.get(i + 1000)));
+        }
+        for (int i = 0; i < 300; i++) {
+            assertTrue(quadraticHashSet.search(keys.get(i)) && !quadraticHashSet.search(keys.get(i + 300)));
+        }
+        assertTrue(linearHashSet.searchAll(keys).cardinality() == 1000 && quadraticHashSet.searchAll(keys).cardinality() == 300);
+
+        // A deleted key leaves no tag behind, and a reinserted one gets it back
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(linearHashSet.delete(keys.get(i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(linearHashSet.search(keys.get(i)) == (i % 2 == 1));
+        }
+        assertTrue(linearHashSet.insert(keys.get(0)) && linearHashSet.search(keys.get(0)) && !linearHashSet.insert(keys.get(0)));
+
+        // A reference and a 2-byte tag per slot
+        assertTrue(quadraticHashSet.memoryFootprint().getSlotBytes() >= 6L * quadraticHashSet.getCapacity());
+    }
+
+
+    @Test
+    public void testMembershipFilter() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("filtered_" + i);
+        }
+        List<String> absent = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            absent.add("absent_" + i);
+        }
+
+        // Built from the keys, then grown past its initial capacity by inserts
+        PerfectHashDictionary dictionary = new PerfectHashDictionary("linear", keys.subList(0, 500), new BuildOptions().setMembershipFilter(true));
+        assertTrue(dictionary.getMembershipFilter() instanceof CountingBloomFilter);
+        for (String key : keys.subList(500, 20000)) {
+            assertTrue(dictionary.insert(key));
+        }
+        assertTrue(!dictionary.insert(keys.get(0)));
+        assertTrue(((CountingBloomFilter) dictionary.getMembershipFilter()).getKeyCount() == 20000);
+
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(dictionary.search(keys.get(i)) && !dictionary.search(absent.get(i)));
+        }
+        DictionaryMetrics metrics = dictionary.getMetrics();
+        assertTrue(metrics.getFilterRejections() + metrics.getFilterFalsePositives() == 20000);
+        assertTrue(metrics.getFilterFalsePositiveRate() < 0.02 && metrics.getMissRatio() == 0.5);
+        assertTrue(dictionary.searchAll(keys).cardinality() == 20000 && dictionary.searchAll(absent).cardinality() == 0);
+
+        // Deleted keys leave the filter, and are not found afterwards
+        assertTrue(dictionary.deleteAll(keys.subList(0, 10000)).cardinality() == 10000);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(!dictionary.search(keys.get(i)) && dictionary.search(keys.get(i + 10000)));
+        }
+        assertTrue(((CountingBloomFilter) dictionary.getMembershipFilter()).getKeyCount() == 10000);
+
+        // Frozen and static dictionaries switch to an xor filter
+        dictionary.freeze();
+        assertTrue(dictionary.getMembershipFilter() instanceof XorFilter);
+        assertTrue(dictionary.searchAll(keys.subList(10000, 20000)).cardinality() == 10000 && !dictionary.search(keys.get(0)));
+
+        PerfectHashDictionary staticDictionary = new PerfectHashDictionary("static", keys, new BuildOptions().setMembershipFilter(true));
+        assertTrue(staticDictionary.getMembershipFilter() instanceof XorFilter);
+        assertTrue(staticDictionary.searchAll(keys).cardinality() == 20000 && staticDictionary.searchAll(absent).cardinality() == 0);
+        assertTrue(staticDictionary.getMetrics().getFilterFalsePositiveRate() < 0.01);
+
+        XorFilter xorFilter = new XorFilter(new long[]{7, 7, 11});
+        assertTrue(xorFilter.mightContain(7) && xorFilter.mightContain(11));
+    }
+
+
+    @Test
+    public void testPerfectHashMaps() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            keys.add("mapped_" + i);
+        }
+
+        PerfectHashMap<String> map = new PerfectHashMap<>(new BuildOptions().setHashFamily(HashFamily.SEEDED));
+        PerfectIntHashMap intMap = new PerfectIntHashMap(new BuildOptions().setSeed(7));
+        PerfectLongHashMap longMap = new PerfectLongHashMap(new BuildOptions().setHashFamily(HashFamily.MULTIPLY_SHIFT));
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(map.put(keys.get(i), "value_" + i) && intMap.put(keys.get(i), i) && longMap.put(keys.get(i), i * 1000000000L));
+        }
+        assertTrue(map.size() == 20000 && intMap.size() == 20000 && longMap.size() == 20000);
+
+        // Values survive every top-level resize and bucket rehash on the way
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(map.get(keys.get(i)).equals("value_" + i));
+            assertTrue(intMap.get(keys.get(i), -1) == i && longMap.get(keys.get(i), -1) == i * 1000000000L);
+            assertTrue(map.get("absent_" + i) == null && intMap.get("absent_" + i, -1) == -1 && !longMap.containsKey("absent_" + i));
+        }
+
+        // Overwrites keep the size, removals free the slot and its value
+        assertTrue(!intMap.put(keys.get(0), 42) && intMap.get(keys.get(0), -1) == 42 && intMap.size() == 20000);
+        assertTrue(intMap.remove(keys.get(0)) && !intMap.remove(keys.get(0)) && intMap.get(keys.get(0), -1) == -1);
+        assertTrue(intMap.addTo(keys.get(0), 3) == 3 && intMap.addTo(keys.get(0), 3) == 6);
+        assertTrue(map.remove(keys.get(1)) && map.getOrDefault(keys.get(1), "none").equals("none") && map.size() == 19999);
+
+        // The buckets draw their functions from the family of the options too
+        for (HashFamily family : HashFamily.values()) {
+            PerfectIntHashMap familyMap = new PerfectIntHashMap(new BuildOptions().setHashFamily(family).setSeed(11));
+            for (int i = 0; i < 2000; i++) {
+                familyMap.put(keys.get(i), i);
+            }
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(familyMap.get(keys.get(i), -1) == i && !familyMap.containsKey("absent_" + i));
+            }
+        }
+
+        int[] values = intMap.getAll(new String[]{keys.get(2), "absent_0", keys.get(3)}, -1);
+        assertTrue(values[0] == 2 && values[1] == -1 && values[2] == 3);
+
+        Set<String> enumerated = new HashSet<>();
+        longMap.forEachKey(enumerated::add);
+        assertTrue(enumerated.equals(new HashSet<>(keys)));
+
+        // A value slot beside every key slot, 4 bytes wide for int values and 8 for long ones
+        MemoryFootprint intBytes = intMap.memoryFootprint();
+        assertTrue(intBytes.getSlotBytes() >= 10L * intMap.getInnerBucketsTotalCapacity());
+        assertTrue(longMap.memoryFootprint().getSlotBytes() >= 14L * longMap.getInnerBucketsTotalCapacity());
+
+        try {
+            map.put("null", null);
+            assertTrue(false);
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // 992 * 'a' + 1000 == 992 * 'b' + 8: distinct keys with one fingerprint, which no seed separates
+        assertTrue(HashFunction.fingerprint("a\u03E8") == HashFunction.fingerprint("b\u0008"));
+        PerfectIntHashMap clashing = new PerfectIntHashMap();
+        clashing.put("a\u03E8", 1);
+        try {
+            clashing.put("b\u0008", 2);
+            assertTrue(false);
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(clashing.size() == 1 && clashing.get("a\u03E8", -1) == 1 && !clashing.containsKey("b\u0008"));
+    }
+}